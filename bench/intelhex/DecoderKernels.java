@@ -0,0 +1,59 @@
+/*******************************************************************************************************
+ * 	File Name: DecoderKernels.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.nio.ByteBuffer;
+
+/*
+ *	Gives the benchmarks the package private RecordDecoder, once with the word at a time
+ *	decoding of the data and once with the pair at a time loop only, so the two are compared
+ *	on the same ByteBuffer input. Part of the benchmarks, not of the library.
+ * */
+public final class DecoderKernels {
+
+	private final RecordDecoder words = new RecordDecoder();
+	private final RecordDecoder pairs = new RecordDecoder();
+
+	public DecoderKernels() {
+		this.pairs.wordDecoding = false;
+	}
+
+	/*
+	 *	Decodes the record between the position and limit of the buffer eight characters at a time.
+	 *
+	 *	@return the status of RecordDecoder, 0 for a correct record
+	 * */
+	public int decodeWords(ByteBuffer record) {
+		return this.words.decode(record, record.position(), record.limit());
+	}
+
+	/*
+	 *	Decodes the record between the position and limit of the buffer two characters at a time.
+	 *
+	 *	@return the status of RecordDecoder, 0 for a correct record
+	 * */
+	public int decodePairs(ByteBuffer record) {
+		return this.pairs.decode(record, record.position(), record.limit());
+	}
+}
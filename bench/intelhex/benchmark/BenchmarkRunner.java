@@ -0,0 +1,123 @@
+/*******************************************************************************************************
+ * 	File Name: BenchmarkRunner.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+
+/*
+ *	A small benchmark harness: runs an operation for a warm up time, then for a number of
+ *	timed iterations, and reports the throughput together with the bytes allocated per operation
+ *	by all the threads, so the work of pool threads is counted too (what the JMH gc profiler
+ *	reports as gc.alloc.rate.norm). A thread ending during an iteration loses its count,
+ *	so the pools used should keep their threads.
+ * */
+final class BenchmarkRunner {
+
+	/*
+	 *	The code measured, its result is consumed so that it can not be optimized away.
+	 * */
+	interface Operation {
+		Object run() throws Exception;
+	}
+
+	private final long warmupNanos;
+	private final long iterationNanos;
+	private final int iterations;
+
+	// Results of the operations end here so the JIT can not drop them
+	private volatile int sink;
+
+	/*
+	 *	@param warmupMillis the time the operation is run before measuring
+	 *	@param iterationMillis the time of one measured iteration
+	 *	@param iterations the number of measured iterations
+	 * */
+	BenchmarkRunner(long warmupMillis, long iterationMillis, int iterations) {
+		this.warmupNanos = warmupMillis * 1000000L;
+		this.iterationNanos = iterationMillis * 1000000L;
+		this.iterations = iterations;
+	}
+
+	static void printHeader() {
+		System.out.println(String.format(Locale.ROOT, "%-44s %14s %12s %14s %14s",
+				"Benchmark", "ops/s", "MB/s", "B/op", "alloc MB/s"));
+	}
+
+	/*
+	 *	Runs and reports the operation.
+	 *
+	 *	@param name the name printed in the report
+	 *	@param bytesPerOperation the size of the input of an operation for the MB/s column, or 0
+	 *	@param operation the code measured
+	 * */
+	void run(String name, long bytesPerOperation, Operation operation) throws Exception {
+		this.loop(operation, this.warmupNanos);
+
+		long operations = 0;
+		long nanos = 0;
+		long allocated = 0;
+		for (int i = 0; i < this.iterations; i++) {
+			long allocatedBefore = BenchmarkRunner.allocatedBytes();
+			long start = System.nanoTime();
+			operations += this.loop(operation, this.iterationNanos);
+			nanos += System.nanoTime() - start;
+			allocated += BenchmarkRunner.allocatedBytes() - allocatedBefore;
+		}
+
+		double seconds = nanos / 1e9;
+		double opsPerSecond = operations / seconds;
+		System.out.println(String.format(Locale.ROOT, "%-44s %14.1f %12s %14.0f %14.1f", name, opsPerSecond,
+				bytesPerOperation > 0 ? String.format(Locale.ROOT, "%.1f", opsPerSecond * bytesPerOperation / 1e6) : "-",
+				(double) allocated / operations, allocated / seconds / 1e6));
+	}
+
+	private long loop(Operation operation, long nanos) throws Exception {
+		long operations = 0;
+		long end = System.nanoTime() + nanos;
+		do {
+			Object result = operation.run();
+			this.sink += result == null ? 0 : result.hashCode();
+			operations++;
+		} while (System.nanoTime() < end);
+		return operations;
+	}
+
+	/*
+	 *	Returns the bytes allocated so far by the live threads, 0 if the JVM can not tell.
+	 * */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+			return 0;
+
+		long total = 0;
+		for (long bytes : ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(bean.getAllThreadIds())) {
+			if (bytes > 0) // -1 for a thread which ended
+				total += bytes;
+		}
+		return total;
+	}
+}
@@ -0,0 +1,246 @@
+/*******************************************************************************************************
+ * 	File Name: HexCorpusGenerator.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex.benchmark;
+
+import intelhex.IntelHexRecord;
+import intelhex.IntelHexRecord.IncorrectRecordException;
+import intelhex.IntelHexWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/*
+ *	Generates Intel HEX files shaped like real firmware images for benchmarks and load tests.
+ *	The output only depends on the seed, the shape and the size, so the same corpus can be
+ *	made again on any machine.
+ *
+ *	Usage: java intelhex.benchmark.HexCorpusGenerator shape size file [seed]
+ *	where shape is one of DENSE, SPARSE, LONG_RECORDS, MANY_LINEAR_ADDRESSES, CORRUPTED
+ *	and size is the approximate file size such as 64K or 256M.
+ * */
+public class HexCorpusGenerator {
+
+	public enum Shape {
+		// One contiguous flash image of 16 byte records
+		DENSE,
+		// Blocks scattered over flash, OTP, option bytes and external QSPI regions
+		SPARSE,
+		// One contiguous image of 255 byte records
+		LONG_RECORDS,
+		// 64 bytes in every 64 KB page in turn, so an extended linear address record every 4 data records
+		MANY_LINEAR_ADDRESSES,
+		// A dense image where about 1 line in 100 is corrupted
+		CORRUPTED
+	}
+
+	// Start of the dense images, the flash of a typical microcontroller
+	private static final long FLASH_ADDRESS = 0x08000000L;
+
+	// The regions of a sparse image, their ends and the share of its data in each, in percent.
+	// A region is not written past its end, so the regions of a large image have less data.
+	private static final long[] SPARSE_REGIONS = { 0x08000000L, 0x1FFF7000L, 0x1FFFC000L, 0x90000000L };
+	private static final long[] SPARSE_REGION_ENDS = { 0x1FFF7000L, 0x1FFFC000L, 0x20000000L, 0xA0000000L };
+	private static final int[] SPARSE_SHARES = { 60, 2, 1, 37 };
+
+	// The 32-bit address space
+	private static final long ADDRESS_LIMIT = 1L << 32;
+
+	// Share of the lines of a CORRUPTED file which are corrupted, in percent
+	private static final int CORRUPTED_PERCENT = 1;
+
+	private final long seed;
+
+	/*
+	 *	@param seed the seed of the random data
+	 * */
+	public HexCorpusGenerator(long seed) {
+		this.seed = seed;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: HexCorpusGenerator shape size file [seed]");
+			System.exit(1);
+		}
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		new HexCorpusGenerator(seed).generate(Shape.valueOf(args[0]), HexCorpusGenerator.parseSize(args[1]),
+				new File(args[2]));
+	}
+
+	/*
+	 *	Writes a file of the shape and about the size.
+	 *
+	 *	@param shape the kind of image
+	 *	@param size the approximate size of the file in bytes
+	 *	@param file the file to create or replace
+	 *
+	 *	@throws IOException
+	 * */
+	public void generate(Shape shape, long size, File file) throws IOException {
+		Random random = new Random(this.seed ^ shape.ordinal() ^ size);
+
+		switch (shape) {
+		case DENSE:
+			this.writeContiguous(random, file, HexCorpusGenerator.dataSize(size, 16), 16);
+			break;
+		case LONG_RECORDS:
+			this.writeContiguous(random, file, HexCorpusGenerator.dataSize(size, 255), 255);
+			break;
+		case SPARSE:
+			this.writeSparse(random, file, HexCorpusGenerator.dataSize(size, 16));
+			break;
+		case MANY_LINEAR_ADDRESSES:
+			// 4 data lines of 45 bytes and an address line of 17 bytes for 64 data bytes
+			this.writePages(random, file, Math.max(64, size * 64 / (4 * 45 + 17)));
+			break;
+		case CORRUPTED:
+			this.writeCorrupted(random, file, HexCorpusGenerator.dataSize(size, 16));
+			break;
+		}
+	}
+
+	private void writeContiguous(Random random, File file, long dataSize, int bytesPerRecord) throws IOException {
+		byte[] data = new byte[64 * 1024];
+		try (IntelHexWriter writer = new IntelHexWriter(file.getPath())) {
+			writer.setBytesPerRecord(bytesPerRecord);
+			for (long written = 0; written < dataSize; ) {
+				int n = (int) Math.min(data.length, dataSize - written);
+				random.nextBytes(data);
+				writer.writeData(FLASH_ADDRESS + written, data, 0, n);
+				written += n;
+			}
+			writer.writeStartAddress(FLASH_ADDRESS + 0x1C1);
+		}
+	}
+
+	private void writeSparse(Random random, File file, long dataSize) throws IOException {
+		byte[] data = new byte[4096];
+		try (IntelHexWriter writer = new IntelHexWriter(file.getPath())) {
+			for (int region = 0; region < SPARSE_REGIONS.length; region++) {
+				long address = SPARSE_REGIONS[region];
+				long end = SPARSE_REGION_ENDS[region];
+				long regionSize = Math.max(16, dataSize * SPARSE_SHARES[region] / 100);
+
+				// Blocks of 16 bytes to 4 KB with gaps of up to 16 KB between them
+				for (long written = 0; written < regionSize && address < end; ) {
+					int n = (int) Math.min(16 + random.nextInt(data.length - 15), regionSize - written);
+					n = (int) Math.min(n, end - address);
+					random.nextBytes(data);
+					writer.writeData(address, data, 0, n);
+					address += n + random.nextInt(16 * 1024);
+					written += n;
+				}
+			}
+		}
+	}
+
+	private void writePages(Random random, File file, long dataSize) throws IOException {
+		byte[] data = new byte[64];
+		try (IntelHexWriter writer = new IntelHexWriter(file.getPath())) {
+			// A block in each of the 65536 pages, then the next round of blocks after them,
+			// so no address is written twice until the address space is full
+			long blockCount = Math.min((dataSize + data.length - 1) / data.length, ADDRESS_LIMIT / data.length);
+			for (long block = 0; block < blockCount; block++) {
+				long page = block & 0xFFFF;
+				long round = block >>> 16;
+				random.nextBytes(data);
+				writer.writeData((page << 16) + round * data.length, data, 0, data.length);
+			}
+		}
+	}
+
+	/*
+	 *	Writes the records with makeRecord so that lines can be damaged on the way: a changed
+	 *	digit (check sum failure), a non hex character, a missing colon or a cut line.
+	 * */
+	private void writeCorrupted(Random random, File file, long dataSize) throws IOException {
+		byte[] data = new byte[16];
+		try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+			long base = -1;
+			for (long address = 0; address < dataSize; address += data.length) {
+				if ((address & ~0xFFFFL) != base) {
+					base = address & ~0xFFFFL;
+					byte[] upper = { (byte) (base >>> 24), (byte) (base >>> 16) };
+					this.writeLine(random, writer, HexCorpusGenerator.makeRecord((byte) 2, 0,
+							IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS, upper));
+				}
+				random.nextBytes(data);
+				this.writeLine(random, writer, HexCorpusGenerator.makeRecord((byte) data.length, (int) address,
+						IntelHexRecord.RECORD_DATA, data));
+			}
+			writer.write(HexCorpusGenerator.makeRecord((byte) 0, 0, IntelHexRecord.RECORD_END_OF_FILE, null) + "\r\n");
+		}
+	}
+
+	private void writeLine(Random random, Writer writer, String record) throws IOException {
+		if (random.nextInt(100) < CORRUPTED_PERCENT) {
+			char[] chars = record.toCharArray();
+			int index = 1 + random.nextInt(chars.length - 1);
+			switch (random.nextInt(4)) {
+			case 0:
+				chars[index] = chars[index] == '0' ? '1' : '0';
+				break;
+			case 1:
+				chars[index] = "GXZ g#".charAt(random.nextInt(6));
+				break;
+			case 2:
+				chars[0] = ';';
+				break;
+			default:
+				record = record.substring(0, index);
+				chars = record.toCharArray();
+			}
+			record = new String(chars);
+		}
+		writer.write(record);
+		writer.write("\r\n");
+	}
+
+	private static String makeRecord(byte byteCount, int address, byte recordType, byte[] data) {
+		try {
+			return IntelHexRecord.makeRecord(byteCount, (byte) (address >>> 8), (byte) address, recordType, data);
+		} catch (IncorrectRecordException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 *	Returns the number of data bytes making a file of about the size, with records of
+	 *	bytesPerRecord bytes taking 13 + 2 * bytesPerRecord bytes each.
+	 * */
+	private static long dataSize(long size, int bytesPerRecord) {
+		return Math.max(bytesPerRecord, size * bytesPerRecord / (13 + 2 * bytesPerRecord));
+	}
+
+	static long parseSize(String size) {
+		char unit = Character.toUpperCase(size.charAt(size.length() - 1));
+		long multiplier = unit == 'K' ? 1L << 10 : unit == 'M' ? 1L << 20 : unit == 'G' ? 1L << 30 : 1;
+		String number = multiplier == 1 ? size : size.substring(0, size.length() - 1);
+		return Long.parseLong(number) * multiplier;
+	}
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************************************
+ * 	File Name: IntelHexBenchmark.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex.benchmark;
+
+import intelhex.DecoderKernels;
+import intelhex.IntelHexFile;
+import intelhex.IntelHexRecord;
+import intelhex.RecordParser;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+/*
+ *	Benchmarks of record parsing, record encoding, check sum calculation and reading
+ *	and writing whole files of 1 KB to 256 MB.
+ *
+ *	Usage: java intelhex.benchmark.IntelHexBenchmark [size...]
+ *	where size is a file size such as 1K, 64K or 256M, by default 1K 64K 1M 16M 256M.
+ *	The files are generated in the temporary directory and deleted at the end.
+ * */
+public class IntelHexBenchmark {
+
+	private static final String[] DEFAULT_SIZES = { "1K", "64K", "1M", "16M", "256M" };
+
+	public static void main(String[] args) throws Exception {
+		String[] sizes = args.length > 0 ? args : DEFAULT_SIZES;
+		BenchmarkRunner runner = new BenchmarkRunner(2000, 1000, 5);
+
+		BenchmarkRunner.printHeader();
+		IntelHexBenchmark.recordBenchmarks(runner);
+		IntelHexBenchmark.decoderBenchmarks(runner);
+
+		File directory = Files.createTempDirectory("intelhex-benchmark").toFile();
+		try {
+			for (String size : sizes) {
+				IntelHexBenchmark.fileBenchmarks(runner, directory, size);
+			}
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/*
+	 *	Parsing, encoding and check sum of a single 16 and 32 byte record.
+	 *	RecordParser on a String and on bytes differ in the input as well as in the decoding
+	 *	of the data, decoderBenchmarks compares the decoding alone.
+	 * */
+	private static void recordBenchmarks(BenchmarkRunner runner) throws Exception {
+		Random random = new Random(42);
+		for (final int length : new int[] { 16, 32 }) {
+			final byte[] data = new byte[length];
+			random.nextBytes(data);
+			final String record = IntelHexRecord.makeRecord((byte) length, (byte) 0x12, (byte) 0x34,
+					IntelHexRecord.RECORD_DATA, data);
+			final byte[] ascii = record.getBytes("US-ASCII");
+			final byte[] out = new byte[ascii.length];
+			final RecordParser parser = new RecordParser();
+
+			runner.run("parse String, " + length + " B", ascii.length, () -> new IntelHexRecord(record));
+			runner.run("parse byte[], " + length + " B", ascii.length, () -> new IntelHexRecord(ascii, 0, ascii.length));
+			runner.run("RecordParser String, " + length + " B", ascii.length, () -> parser.parse(record));
+			runner.run("RecordParser byte[], " + length + " B", ascii.length, () -> parser.parse(ascii, 0, ascii.length));
+			runner.run("makeRecord, " + length + " B", ascii.length, () -> IntelHexRecord.makeRecord((byte) length,
+					(byte) 0x12, (byte) 0x34, IntelHexRecord.RECORD_DATA, data));
+			runner.run("encodeRecord byte[], " + length + " B", ascii.length, () -> IntelHexRecord.encodeRecord(
+					(byte) length, (byte) 0x12, (byte) 0x34, IntelHexRecord.RECORD_DATA, data, out, 0));
+			runner.run("calculateCheckSum, " + length + " B", length, () -> IntelHexRecord.calculateCheckSum(
+					(byte) length, (byte) 0x12, (byte) 0x34, IntelHexRecord.RECORD_DATA, data));
+		}
+	}
+
+	/*
+	 *	Decoding a single record of 16, 32 and 255 data bytes from the same direct buffer, as
+	 *	a mapped file is, eight characters at a time and one pair of characters at a time.
+	 * */
+	private static void decoderBenchmarks(BenchmarkRunner runner) throws Exception {
+		Random random = new Random(42);
+		final DecoderKernels kernels = new DecoderKernels();
+		for (final int length : new int[] { 16, 32, 255 }) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			byte[] ascii = IntelHexRecord.makeRecord((byte) length, (byte) 0x12, (byte) 0x34,
+					IntelHexRecord.RECORD_DATA, data).getBytes("US-ASCII");
+			final ByteBuffer record = ByteBuffer.allocateDirect(ascii.length);
+			record.put(ascii).flip();
+
+			runner.run("RecordDecoder words, " + length + " B", ascii.length, () -> kernels.decodeWords(record));
+			runner.run("RecordDecoder pairs, " + length + " B", ascii.length, () -> kernels.decodePairs(record));
+		}
+	}
+
+	/*
+	 *	Reading and writing a generated file of the size.
+	 * */
+	private static void fileBenchmarks(BenchmarkRunner runner, File directory, String size) throws Exception {
+		final File file = new File(directory, size + ".hex");
+		new HexCorpusGenerator(42).generate(HexCorpusGenerator.Shape.DENSE, HexCorpusGenerator.parseSize(size), file);
+		final String path = file.getPath();
+		final long length = file.length();
+		final IntelHexRecord[] records = IntelHexFile.readRecordsFromFile(path);
+
+		runner.run("readRecordsFromFile, " + size, length, () -> IntelHexFile.readRecordsFromFile(path));
+		runner.run("readRecordsFromMappedFile, " + size, length, () -> IntelHexFile.readRecordsFromMappedFile(path));
+		runner.run("readRecordsFromFileParallel, " + size, length, () -> IntelHexFile.readRecordsFromFileParallel(path));
+		runner.run("readMemoryImage, " + size, length, () -> IntelHexFile.readMemoryImage(path));
+		runner.run("writeRecordsToFile, " + size, length, () -> {
+			IntelHexFile.writeRecordsToFile(directory.getPath(), "write", records);
+			return null;
+		});
+		runner.run("writeRecordsToFile channel, " + size, length, () -> {
+			IntelHexFile.writeRecordsToFile(directory.getPath(), "write", records, false);
+			return null;
+		});
+		file.delete();
+	}
+}
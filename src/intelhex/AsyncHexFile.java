@@ -0,0 +1,317 @@
+/*******************************************************************************************************
+ * 	File Name: AsyncHexFile.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.OpenOption;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/*
+ *	Reads and writes files with an AsynchronousFileChannel, no thread waits for the I/O.
+ *	Every completed read is decoded on the thread completing it before the next read is
+ *	started, and every write is started once the one before it has completed, so one buffer
+ *	is used for the whole file. The channel is closed before the returned future completes.
+ * */
+final class AsyncHexFile {
+
+	private AsyncHexFile() {
+	}
+
+	/*
+	 *	Reads the records of the file, same as IntelHexFile.readRecordsFromFile.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@return the future of the records, completed exceptionally with an IOException,
+	 *	CheckSumFailException or IncorrectRecordException
+	 * */
+	static CompletableFuture<IntelHexRecord[]> readRecords(String filePathName) {
+		final ArrayList<IntelHexRecord> records = new ArrayList<IntelHexRecord>();
+		
+		return AsyncHexFile.read(filePathName, new LineReader<IntelHexRecord[]>() {
+			private long base;
+			
+			@Override
+			boolean onLine(RecordDecoder decoder, int status, long lineNumber) throws Exception {
+				if (status != RecordDecoder.OK)
+					decoder.throwException(status);
+				
+				records.add(new IntelHexRecord(decoder, this.base + decoder.address()));
+				this.base = decoder.nextBase(this.base);
+				return true;
+			}
+			
+			@Override
+			IntelHexRecord[] result() {
+				return records.toArray(new IntelHexRecord[records.size()]);
+			}
+		});
+	}
+
+	/*
+	 *	Parses the file to the handler, same as IntelHexParser.parse.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *	@param handler the handler receiving the contents
+	 *	@param result called once the whole file is parsed or the handler stopped the parsing,
+	 *	for the value the future is completed with
+	 *
+	 *	@return the future of the value returned by result
+	 * */
+	static <T> CompletableFuture<T> parse(String filePathName, final IntelHexHandler handler, final Callable<T> result) {
+		return AsyncHexFile.read(filePathName, new LineReader<T>() {
+			private long base;
+			
+			@Override
+			boolean onLine(RecordDecoder decoder, int status, long lineNumber) {
+				this.base = IntelHexParser.handleRecord(decoder, status, lineNumber, this.base, handler);
+				return this.base >= 0;
+			}
+			
+			@Override
+			T result() throws Exception {
+				return result.call();
+			}
+		});
+	}
+
+	private static <T> CompletableFuture<T> read(String filePathName, LineReader<T> reader) {
+		AsynchronousFileChannel channel;
+		try {
+			channel = AsynchronousFileChannel.open(Paths.get(filePathName), StandardOpenOption.READ);
+		} catch (IOException e) {
+			return AsyncHexFile.failed(e);
+		}
+		reader.channel = channel;
+		reader.readNext();
+		return AsyncHexFile.closeWhenDone(reader.future, channel);
+	}
+
+	/*
+	 *	Writes the records to the file, same as IntelHexFile.writeRecordsToFile(filePath, fileName, records, sync).
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *	@param records the records to write
+	 *
+	 *	@return the future completed once all the records are written
+	 * */
+	static CompletableFuture<Void> writeRecords(String filePathName, IntelHexRecord[] records) {
+		AsynchronousFileChannel channel;
+		try {
+			channel = AsynchronousFileChannel.open(Paths.get(filePathName), new OpenOption[] { StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING });
+		} catch (IOException e) {
+			return AsyncHexFile.failed(e);
+		}
+		RecordWriter writer = new RecordWriter(channel, records);
+		writer.writeNext();
+		return AsyncHexFile.closeWhenDone(writer.future, channel);
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable error) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(error);
+		return future;
+	}
+
+	/*
+	 *	Returns a future completed like the given one once the channel is closed.
+	 * */
+	private static <T> CompletableFuture<T> closeWhenDone(CompletableFuture<T> future, final AsynchronousFileChannel channel) {
+		final CompletableFuture<T> closed = new CompletableFuture<T>();
+		future.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T value, Throwable error) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					if (error == null)
+						error = e;
+				}
+				if (error != null)
+					closed.completeExceptionally(error);
+				else
+					closed.complete(value);
+			}
+		});
+		return closed;
+	}
+
+	/*
+	 *	Reads the file buffer by buffer and decodes the complete lines of every buffer,
+	 *	an incomplete last line is moved to the start of the buffer and completed by the next read.
+	 * */
+	private static abstract class LineReader<T> implements CompletionHandler<Integer, Void> {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		AsynchronousFileChannel channel;
+		
+		// Holds the longest line accepted with a "\r\n", the scanner rejects the longer lines
+		private final ByteBuffer buffer = ByteBuffer.allocate(IntelHexReader.DEFAULT_BUFFER_SIZE + 2);
+		private final RecordDecoder decoder = new RecordDecoder();
+		private long position;
+		private long lineNumber;
+		
+		/*
+		 *	Called for every line with the decoder holding it.
+		 *
+		 *	@return false to stop reading
+		 * */
+		abstract boolean onLine(RecordDecoder decoder, int status, long lineNumber) throws Exception;
+		
+		/*
+		 *	Called at the end of the file or once onLine returned false.
+		 *
+		 *	@return the value the future is completed with
+		 * */
+		abstract T result() throws Exception;
+		
+		void readNext() {
+			this.channel.read(this.buffer, this.position, null, this);
+		}
+		
+		@Override
+		public void completed(Integer count, Void attachment) {
+			try {
+				boolean endOfInput = count < 0;
+				if (!endOfInput)
+					this.position += count;
+				
+				this.buffer.flip();
+				LineScanner lines = new LineScanner(this.buffer, endOfInput);
+				while (lines.nextLine()) {
+					int status = this.decoder.decode(lines.buffer, lines.lineStart, lines.lineEnd);
+					if (!this.onLine(this.decoder, status, ++this.lineNumber)) {
+						this.future.complete(this.result());
+						return;
+					}
+				}
+				if (endOfInput) {
+					this.future.complete(this.result());
+					return;
+				}
+				
+				this.buffer.position(lines.buffer.position());
+				this.buffer.compact();
+				if (!this.buffer.hasRemaining())
+					throw new IncorrectRecordException(lines.lineTooLongMessage());
+				this.readNext();
+			} catch (Exception e) {
+				this.future.completeExceptionally(e);
+			} catch (Error e) {
+				this.future.completeExceptionally(e);
+				throw e;
+			}
+		}
+		
+		@Override
+		public void failed(Throwable error, Void attachment) {
+			this.future.completeExceptionally(error);
+		}
+	}
+
+	/*
+	 *	Encodes the records into a buffer and writes it, then encodes the next records
+	 *	once the write has completed. The buffer is on the heap and no larger than the output,
+	 *	so many files written at the same time hold no direct memory until the next collection.
+	 * */
+	private static final class RecordWriter implements CompletionHandler<Integer, Void> {
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		
+		private final AsynchronousFileChannel channel;
+		private final IntelHexRecord[] records;
+		private final ByteBuffer buffer;
+		private int index;
+		private long position;
+		
+		RecordWriter(AsynchronousFileChannel channel, IntelHexRecord[] records) {
+			this.channel = channel;
+			this.records = records;
+			
+			long length = 0;
+			for (int i = 0; i < records.length && length < IntelHexFile.WRITE_BUFFER_SIZE; i++) {
+				length += RecordWriter.lineLength(records[i]);
+			}
+			this.buffer = ByteBuffer.allocate((int) Math.min(length, IntelHexFile.WRITE_BUFFER_SIZE));
+		}
+		
+		/*
+		 *	Returns the number of bytes of the record and its "\r\n".
+		 * */
+		private static int lineLength(IntelHexRecord record) {
+			return 11 + 2 * record.getDataSequence().length + 2;
+		}
+		
+		void writeNext() {
+			this.buffer.clear();
+			byte[] out = this.buffer.array();
+			int end = 0;
+			while (this.index < this.records.length && out.length - end >= RecordWriter.lineLength(this.records[this.index])) {
+				IntelHexRecord record = this.records[this.index++];
+				byte[] data = record.getDataSequence();
+				end = IntelHexRecord.encode(out, end, record.getRecordType() & 0xff, record.getAddress(),
+						data, 0, data.length);
+				out[end++] = '\r';
+				out[end++] = '\n';
+			}
+			this.buffer.limit(end);
+			
+			if (!this.buffer.hasRemaining()) {
+				this.future.complete(null);
+				return;
+			}
+			this.channel.write(this.buffer, this.position, null, this);
+		}
+		
+		@Override
+		public void completed(Integer count, Void attachment) {
+			try {
+				this.position += count;
+				if (this.buffer.hasRemaining())
+					this.channel.write(this.buffer, this.position, null, this);
+				else
+					this.writeNext();
+			} catch (RuntimeException e) {
+				this.future.completeExceptionally(e);
+			} catch (Error e) {
+				this.future.completeExceptionally(e);
+				throw e;
+			}
+		}
+		
+		@Override
+		public void failed(Throwable error, Void attachment) {
+			this.future.completeExceptionally(error);
+		}
+	}
+}
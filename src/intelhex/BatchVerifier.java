@@ -0,0 +1,126 @@
+/*******************************************************************************************************
+ * 	File Name: BatchVerifier.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/*
+ *	Verifies many files at once on an executor, so the time one file waits for I/O is used
+ *	by the others. A semaphore limits how many files are open and verified at the same time,
+ *	whatever the number of threads of the executor, so it also bounds an executor making a
+ *	thread per task.
+ * */
+final class BatchVerifier {
+
+	private BatchVerifier() {
+	}
+
+	/*
+	 *	Verifies the files with IntelHexFile.verify.
+	 *
+	 *	@param filePathNames the files to verify
+	 *	@param maxErrors the number of incorrect lines after which a file is not checked further
+	 *	@param concurrency the largest number of files verified at the same time
+	 *	@param executor the executor the files are verified on, it is not shut down
+	 *
+	 *	@throws InterruptedException if the thread is interrupted while waiting, the files
+	 *	not verified yet are cancelled
+	 *
+	 *	@return the result of every file, in the order of filePathNames
+	 * */
+	static List<FileVerification> verify(Collection<String> filePathNames, final int maxErrors, int concurrency,
+			ExecutorService executor) throws InterruptedException {
+		if (maxErrors <= 0)
+			throw new IllegalArgumentException("maxErrors should be positive: " + maxErrors);
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("concurrency should be positive: " + concurrency);
+		
+		final Semaphore permits = new Semaphore(concurrency);
+		List<Future<FileVerification>> futures = new ArrayList<Future<FileVerification>>(filePathNames.size());
+		
+		try {
+			for (final String filePathName : filePathNames) {
+				// Waiting here keeps at most concurrency tasks submitted at any time
+				permits.acquire();
+				try {
+					futures.add(executor.submit(new Callable<FileVerification>() {
+						@Override
+						public FileVerification call() {
+							try {
+								return BatchVerifier.verify(filePathName, maxErrors);
+							} finally {
+								permits.release();
+							}
+						}
+					}));
+				} catch (RuntimeException e) { // the executor rejected the task
+					permits.release();
+					throw e;
+				}
+			}
+			
+			List<FileVerification> results = new ArrayList<FileVerification>(futures.size());
+			for (Future<FileVerification> future : futures) {
+				results.add(BatchVerifier.getResult(future));
+			}
+			return results;
+		} finally {
+			for (Future<FileVerification> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private static FileVerification verify(String filePathName, int maxErrors) {
+		try {
+			return new FileVerification(filePathName, IntelHexFile.verify(filePathName, maxErrors), null);
+		} catch (IOException e) {
+			return new FileVerification(filePathName, null, e);
+		}
+	}
+
+	/*
+	 *	Waits for the result of the task, throwing what the task threw other than an IOException.
+	 * */
+	private static FileVerification getResult(Future<FileVerification> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************************************
+ * 	File Name: FileVerification.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.io.IOException;
+import java.util.List;
+
+/*
+ *	The result of verifying one file of a batch: the incorrect lines found in it,
+ *	or the IOException which stopped it from being read.
+ * */
+public class FileVerification {
+
+	private final String filePathName;
+	private final List<RecordError> errors;
+	private final IOException exception;
+
+	/*
+	 *	@param filePathName the file verified
+	 *	@param errors the incorrect lines, null if the file could not be read
+	 *	@param exception the exception reading the file, null if it was read
+	 * */
+	FileVerification(String filePathName, List<RecordError> errors, IOException exception) {
+		this.filePathName = filePathName;
+		this.errors = errors;
+		this.exception = exception;
+	}
+
+	/*
+	 *	Returns the path of the file as given.
+	 *
+	 *	@return filePathName
+	 * */
+	public String getFilePathName() {
+		return this.filePathName;
+	}
+
+	/*
+	 *	Returns the incorrect lines in file order.
+	 *
+	 *	@return errors, empty if the file is correct and null if it could not be read
+	 * */
+	public List<RecordError> getErrors() {
+		return this.errors;
+	}
+
+	/*
+	 *	Returns the exception which stopped the file from being read.
+	 *
+	 *	@return exception, null if the file was read
+	 * */
+	public IOException getException() {
+		return this.exception;
+	}
+
+	/*
+	 *	Returns true if the file was read and every line of it is correct.
+	 *
+	 *	@return isValid
+	 * */
+	public boolean isValid() {
+		return this.exception == null && this.errors.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		if (this.exception != null)
+			return this.filePathName + ": " + this.exception;
+		return this.filePathName + ": " + (this.errors.isEmpty() ? "OK" : this.errors.size() + " incorrect lines");
+	}
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************************************
+ * 	File Name: HexCodec.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.nio.ByteBuffer;
+
+/*
+ *	Table driven conversion between ASCII hex characters and their values.
+ *	Used by the record parsers and writers so that no String is built for a single byte.
+ * */
+final class HexCodec {
+
+	// Returned by the decode methods when a character is not a hex digit.
+	static final int INVALID = -1;
+
+	// Maps an ASCII character to its nibble value, INVALID for anything else.
+	private static final byte[] NIBBLE = new byte[128];
+
+	// A 1 and the high bit in every byte of a long
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	// Maps a nibble value to its upper case ASCII character.
+	private static final byte[] DIGIT = {
+		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+	};
+
+	// Maps a byte value to its two upper case ASCII characters, the first in the upper 8 bits,
+	// so a byte is encoded with a single lookup.
+	private static final char[] PAIR = new char[256];
+
+	static {
+		for (int i = 0; i < NIBBLE.length; i++) {
+			NIBBLE[i] = INVALID;
+		}
+		for (int i = 0; i < 10; i++) {
+			NIBBLE['0' + i] = (byte) i;
+		}
+		for (int i = 0; i < 6; i++) {
+			NIBBLE['A' + i] = (byte) (10 + i);
+			NIBBLE['a' + i] = (byte) (10 + i);
+		}
+		for (int i = 0; i < PAIR.length; i++) {
+			PAIR[i] = (char) ((DIGIT[i >>> 4] << 8) | DIGIT[i & 0xF]);
+		}
+	}
+
+	private HexCodec() {
+	}
+
+	/*
+	 *	Returns the value of a single hex character.
+	 *
+	 *	@param ch the character, either a char or an unsigned ASCII byte
+	 *
+	 *	@return the nibble value 0 - 15 or INVALID
+	 * */
+	static int nibble(int ch) {
+		return (ch & ~0x7F) == 0 ? NIBBLE[ch] : INVALID;
+	}
+
+	/*
+	 *	Combines the two hex characters to a byte value,
+	 *	eg. hi = A & lo = F, the result will be 0xAF
+	 *
+	 *	@param hi the character of the 4 MSBits
+	 *	@param lo the character of the 4 LSBits
+	 *
+	 *	@return the value 0 - 255, or a negative value if any of the two is not a hex character
+	 * */
+	static int decodePair(int hi, int lo) {
+		int h = nibble(hi);
+		int l = nibble(lo);
+		return (h | l) < 0 ? INVALID : (h << 4) | l;
+	}
+
+	/*
+	 *	Decodes eight hex characters at once, packed in a long with the first character in the
+	 *	most significant byte, to the four bytes they stand for. All eight are checked and
+	 *	converted with a few operations on the whole long, without a branch per character.
+	 *
+	 *	@param word eight ASCII characters, big endian
+	 *
+	 *	@return the four bytes packed in an int, first byte most significant, as a non negative
+	 *	long, or INVALID if any of the characters is not a hex character
+	 * */
+	static long decodeWord(long word) {
+		long nibbles = HexCodec.nibbles(word);
+		if (nibbles < 0)
+			return INVALID;
+
+		// Every other byte gets its nibble and the one of the next byte, then the four are gathered
+		long pairs = (nibbles << 4) | (nibbles << 8);
+		return ((pairs >>> 32) & 0xFF000000L) | ((pairs >>> 24) & 0xFF0000L)
+				| ((pairs >>> 16) & 0xFF00L) | ((pairs >>> 8) & 0xFFL);
+	}
+
+	/*
+	 *	Adds up the four bytes of eight hex characters without decoding them to bytes,
+	 *	as 16 times the sum of the high nibbles plus the sum of the low nibbles.
+	 *
+	 *	@param word eight ASCII characters, big endian
+	 *
+	 *	@return the sum of the four bytes 0 - 1020, or INVALID if any of the characters
+	 *	is not a hex character
+	 * */
+	static int sumWord(long word) {
+		long nibbles = HexCodec.nibbles(word);
+		if (nibbles < 0)
+			return INVALID;
+
+		// Multiplying by ONES adds every byte into the top byte, at most 4 * 15 for each half
+		long high = ((nibbles >>> 8) & 0x000F000F000F000FL) * ONES >>> 56;
+		long low = (nibbles & 0x000F000F000F000FL) * ONES >>> 56;
+		return (int) (high * 16 + low);
+	}
+
+	/*
+	 *	Checks eight hex characters at once and converts each to its nibble value, in place.
+	 *
+	 *	@param word eight ASCII characters
+	 *
+	 *	@return the eight nibbles, one per byte, or INVALID if any of the characters is not
+	 *	a hex character
+	 * */
+	private static long nibbles(long word) {
+		// With no high bit set, adding less than 0x80 to a byte never carries into the next byte,
+		// so the high bit of each byte of the sum tells if that byte is at least some value.
+		if ((word & HIGH_BITS) != 0)
+			return INVALID;
+		long digit = (word + ONES * (0x80 - '0')) & ~(word + ONES * (0x80 - '9' - 1));
+		long lowerCase = word | ONES * 0x20;
+		long letter = (lowerCase + ONES * (0x80 - 'a')) & ~(lowerCase + ONES * (0x80 - 'f' - 1));
+		if (((digit | letter) & HIGH_BITS) != HIGH_BITS)
+			return INVALID;
+
+		// '0' - '9' are 0x30 - 0x39 and 'A' - 'F', 'a' - 'f' end in 1 - 6, 9 less than their value
+		return (word & ONES * 0x0F) + ((letter & HIGH_BITS) >>> 7) * 9;
+	}
+
+	/*
+	 *	Writes the two upper case hex characters of the byte to the array.
+	 *
+	 *	@param value the byte, only the 8 LSBits are used
+	 *	@param out the array the characters are written to
+	 *	@param index the index of the first character
+	 *
+	 *	@return the index after the two characters
+	 * */
+	static int encodePair(int value, byte[] out, int index) {
+		char pair = PAIR[value & 0xFF];
+		out[index] = (byte) (pair >>> 8);
+		out[index + 1] = (byte) pair;
+		return index + 2;
+	}
+
+	/*
+	 *	Writes the two upper case hex characters of the byte at the position of the buffer,
+	 *	which has to be in big endian order.
+	 *
+	 *	@param value the byte, only the 8 LSBits are used
+	 *	@param out the buffer the characters are written to
+	 * */
+	static void encodePair(int value, ByteBuffer out) {
+		out.putChar(PAIR[value & 0xFF]);
+	}
+
+	/*
+	 *	Returns the two upper case hex characters of the byte.
+	 *
+	 *	@param value the byte, only the 8 LSBits are used
+	 *
+	 *	@return the first character in the upper 8 bits and the second in the lower 8 bits
+	 * */
+	static char pair(int value) {
+		return PAIR[value & 0xFF];
+	}
+}
@@ -26,16 +26,41 @@ package intelhex;
 import intelhex.IntelHexRecord.CheckSumFailException;
 import intelhex.IntelHexRecord.IncorrectRecordException;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
 public class IntelHexFile {
+	
+	// The direct buffers filled by writeRecordsToFile before a gathering write. Direct memory is
+	// only freed by the garbage collector, so every thread keeps its buffers between the calls.
+	private static final int WRITE_BUFFER_COUNT = 4;
+	static final int WRITE_BUFFER_SIZE = 256 * 1024;
+	private static final ThreadLocal<ByteBuffer[]> WRITE_BUFFERS = new ThreadLocal<ByteBuffer[]>() {
+		@Override
+		protected ByteBuffer[] initialValue() {
+			ByteBuffer[] buffers = new ByteBuffer[WRITE_BUFFER_COUNT];
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i] = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+			}
+			return buffers;
+		}
+	};
 
 	/*
 	 *	Writes the records to a file having path=filePath and name=fileName.hex
@@ -57,38 +82,506 @@ public class IntelHexFile {
 		}
 		bw.close();
 	}
+	
+	/*
+	 *	Writes the records to a file having path=filePath and name=fileName.hex through a FileChannel.
+	 *	The records are encoded from their fields straight into direct buffers, which are written
+	 *	together with a gathering write when they are all full, so no String is made per line.
+	 *	The buffers are allocated once per calling thread and reused by its later calls.
+	 *	The records are written in upper case hex, followed by "\r\n".
+	 *	
+	 *	@param filePath The path to the directory of the file.
+	 *	@param fileName The name of the file; a .hex extension will be added.
+	 *	@param records An array containing the IntelHexRecord to write.
+	 *	@param sync true to force the file contents and metadata to the storage device before returning.
+	 *	
+	 *	@throws IOException
+	 * */
+	public static void writeRecordsToFile(String filePath, String fileName, IntelHexRecord[] records, boolean sync) 
+			throws IOException {
+		ByteBuffer[] buffers = WRITE_BUFFERS.get();
+		for (ByteBuffer buffer : buffers) {
+			buffer.clear(); // a call which failed may have left bytes in them
+		}
+		
+		try (FileChannel channel = FileChannel.open(Paths.get(filePath, fileName + ".hex"), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			int current = 0; // the buffer being filled
+			
+			for (int i = 0; i < records.length; i++) {
+				IntelHexRecord record = records[i];
+				byte[] data = record.getDataSequence();
+				int n = 11 + 2 * data.length + 2; // the record and "\r\n"
+				
+				if (buffers[current].remaining() < n && ++current == buffers.length) {
+					IntelHexFile.writeBuffers(channel, buffers);
+					current = 0;
+				}
+				IntelHexRecord.encode(buffers[current], record.getRecordType() & 0xff, record.getAddress(),
+						data, 0, data.length);
+				buffers[current].put((byte) '\r').put((byte) '\n');
+			}
+			IntelHexFile.writeBuffers(channel, buffers);
+			
+			if (sync)
+				channel.force(true);
+		}
+	}
+	
+	/*
+	 *	Writes the records to filePath/fileName.hex without blocking the calling thread, with the
+	 *	same contents as writeRecordsToFile(filePath, fileName, records, sync): every record is
+	 *	encoded from its fields in upper case hex, even one made from a string in lower case.
+	 *	The records are encoded into one buffer while no write of an AsynchronousFileChannel is pending.
+	 *
+	 *	@param filePath The path to the directory of the file.
+	 *	@param fileName The name of the file; a .hex extension will be added.
+	 *	@param records An array containing the IntelHexRecord to write.
+	 *
+	 *	@return the future completed once the records are written, exceptionally with an IOException
+	 * */
+	public static CompletableFuture<Void> writeRecordsAsync(String filePath, String fileName, IntelHexRecord[] records) {
+		return AsyncHexFile.writeRecords(Paths.get(filePath, fileName + ".hex").toString(), records);
+	}
+	
+	/*
+	 *	Writes the buffers with gathering writes and clears them.
+	 * */
+	private static void writeBuffers(FileChannel channel, ByteBuffer[] buffers) throws IOException {
+		for (ByteBuffer buffer : buffers) {
+			buffer.flip();
+		}
+		while (IntelHexFile.hasRemaining(buffers)) {
+			channel.write(buffers);
+		}
+		for (ByteBuffer buffer : buffers) {
+			buffer.clear();
+		}
+	}
+	
+	private static boolean hasRemaining(ByteBuffer[] buffers) {
+		for (ByteBuffer buffer : buffers) {
+			if (buffer.hasRemaining())
+				return true;
+		}
+		return false;
+	}
 
 	/*
 	 *	Reads Intel HEX records from the file and returns an array of IntelHEXRecords.
+	 *	The lines are decoded as they are read and the records do not keep them, getRecord()
+	 *	regenerates a record in upper case hex when asked for.
+	 *	A line longer than IntelHexReader.DEFAULT_BUFFER_SIZE (64 KB), not counting its line
+	 *	terminator, is rejected even if it starts with a correct record. The other readers
+	 *	of this class reject it too.
 	 *
 	 *	@param filePathName the complete path to file including its name and extension
 	 *
 	 *	@throws FileNotFoundException
 	 *	@throws IOException
 	 *	@throws CheckSumFailException
-	 *	@throws IncorrectRecordException	
+	 *	@throws IncorrectRecordException if a record is incorrect or a line is too long
 	 *
 	 *	@return an array of IntelHexRecord parsed from the file.
 	 * */
 	public static IntelHexRecord[] readRecordsFromFile(String filePathName) 
 			throws FileNotFoundException, IOException, CheckSumFailException, IncorrectRecordException  {
-		IntelHexRecord[] toReturn = null;
-		ArrayList<String> stringRecords = new ArrayList<String>();
-		
-		// Reading the records from the file
-		File file = new File(filePathName);	
-		BufferedReader br = new BufferedReader(new FileReader(file));		
-		for(String line; (line = br.readLine()) != null; ) {
-			stringRecords.add(line);
-		}
-		br.close();
-		
-		// Initializing the return array and filling it with the IntelHexRecords generated
-		// from the input file lines
-		toReturn = new IntelHexRecord[stringRecords.size()];
-		for (int i = 0, n = toReturn.length; i < n; i++) {
-			toReturn[i] = new IntelHexRecord(stringRecords.get(i));
-		}		
-		return toReturn;
+		ArrayList<IntelHexRecord> records = new ArrayList<IntelHexRecord>();
+		
+		// Reading the records from the file, the reader resolves their addresses
+		File file = new File(filePathName);
+		IntelHexReader reader = new IntelHexReader(new FileInputStream(file));
+		try {
+			for (IntelHexRecord record; (record = reader.readRecord()) != null; ) {
+				records.add(record);
+			}
+		} finally {
+			reader.close();
+		}
+		return records.toArray(new IntelHexRecord[records.size()]);
+	}
+	
+	/*
+	 *	Reads Intel HEX records from the file without blocking the calling thread, the
+	 *	records are decoded as the reads of an AsynchronousFileChannel complete.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@return the future of the records parsed from the file, completed exceptionally with
+	 *	an IOException, CheckSumFailException or IncorrectRecordException
+	 * */
+	public static CompletableFuture<IntelHexRecord[]> readRecordsAsync(String filePathName) {
+		return AsyncHexFile.readRecords(filePathName);
+	}
+	
+	/*
+	 *	Reads Intel HEX records from the file into a RecordTable, which keeps the fields of all
+	 *	the records in a few arrays instead of an object per record.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException
+	 *
+	 *	@return the table of the records of the file.
+	 * */
+	public static RecordTable readRecordTable(String filePathName) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		RecordTable table = new RecordTable();
+		RecordDecoder decoder = new RecordDecoder();
+		LineScanner lines = new LineScanner(FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ),
+				IntelHexReader.DEFAULT_BUFFER_SIZE);
+		long base = 0;
+		
+		try {
+			while (lines.nextLine()) {
+				int status = decoder.decode(lines.buffer, lines.lineStart, lines.lineEnd);
+				if (status != RecordDecoder.OK)
+					decoder.throwException(status);
+				base = table.add(decoder, base);
+			}
+		} finally {
+			lines.close();
+		}
+		table.trimToSize();
+		return table;
+	}
+	
+	/*
+	 *	Reads the correct Intel HEX records from the file and continues past incorrect lines,
+	 *	so a single pass finds every problem of the file. The addresses are resolved as if
+	 *	the incorrect lines were not there.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *	@param errors the list the incorrect lines are added to, in file order
+	 *	@param maxErrors the largest number of errors added to the list, the lines after
+	 *	are still read but their errors are not kept
+	 *
+	 *	@throws IOException
+	 *
+	 *	@return an array of the correct IntelHexRecord of the file.
+	 * */
+	public static IntelHexRecord[] readRecordsFromFile(String filePathName, List<RecordError> errors, int maxErrors) 
+			throws IOException {
+		ArrayList<IntelHexRecord> records = new ArrayList<IntelHexRecord>();
+		RecordDecoder decoder = new RecordDecoder();
+		LineScanner lines = new LineScanner(FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ),
+				IntelHexReader.DEFAULT_BUFFER_SIZE);
+		int errorCount = 0;
+		long base = 0;
+		
+		try {
+			for (;;) {
+				try {
+					if (!lines.nextLine())
+						break;
+				} catch (IncorrectRecordException e) { // the line does not fit the buffer and is skipped
+					if (errorCount++ < maxErrors)
+						errors.add(new RecordError(lines.lineNumber, 1, RecordError.LINE_TOO_LONG, lines.lineTooLongMessage(), -1, -1));
+					continue;
+				}
+				
+				int status = decoder.decode(lines.buffer, lines.lineStart, lines.lineEnd);
+				if (status != RecordDecoder.OK) {
+					if (errorCount++ < maxErrors)
+						errors.add(RecordError.fromDecoder(lines.lineNumber, decoder, status));
+					continue;
+				}
+				
+				records.add(new IntelHexRecord(decoder, base + decoder.address()));
+				base = decoder.nextBase(base);
+			}
+		} finally {
+			lines.close();
+		}
+		return records.toArray(new IntelHexRecord[records.size()]);
+	}
+	
+	/*
+	 *	Reads Intel HEX records from the file by mapping it in memory and decoding every
+	 *	line in place, without reading it as a String first. Gives the same records as
+	 *	readRecordsFromFile.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException	
+	 *
+	 *	@return an array of IntelHexRecord parsed from the file.
+	 * */
+	public static IntelHexRecord[] readRecordsFromMappedFile(String filePathName) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		ArrayList<IntelHexRecord> records = new ArrayList<IntelHexRecord>();
+		
+		// The cursor maps the file window by window and resolves the addresses
+		RecordCursor cursor = new RecordCursor(filePathName);
+		try {
+			while (cursor.next()) {
+				records.add(cursor.toRecord());
+			}
+		} finally {
+			cursor.close();
+		}
+		return records.toArray(new IntelHexRecord[records.size()]);
+	}
+	
+	/*
+	 *	Checks the characters, lengths and check sums of every line of the file without
+	 *	keeping anything of it, and stops at the first incorrect line.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 *
+	 *	@return the first incorrect line, or null if the file is correct
+	 * */
+	public static RecordError verify(String filePathName) throws IOException {
+		List<RecordError> errors = IntelHexFile.verify(filePathName, 1);
+		return errors.isEmpty() ? null : errors.get(0);
+	}
+	
+	/*
+	 *	Checks the characters, lengths and check sums of every line of the file without
+	 *	keeping anything of it. The check sums are calculated straight from the hex characters
+	 *	in the read buffer, no object is made for a correct line.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *	@param maxErrors the number of incorrect lines after which checking stops, at least 1
+	 *
+	 *	@throws IOException
+	 *
+	 *	@return the incorrect lines in file order, empty if the file is correct
+	 * */
+	public static List<RecordError> verify(String filePathName, int maxErrors) throws IOException {
+		if (maxErrors <= 0)
+			throw new IllegalArgumentException("maxErrors should be positive: " + maxErrors);
+		
+		List<RecordError> errors = new ArrayList<RecordError>();
+		RecordDecoder decoder = new RecordDecoder();
+		LineScanner lines = new LineScanner(FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ),
+				IntelHexReader.DEFAULT_BUFFER_SIZE);
+		
+		try {
+			while (errors.size() < maxErrors) {
+				try {
+					if (!lines.nextLine())
+						break;
+				} catch (IncorrectRecordException e) { // the line does not fit the buffer and is skipped
+					errors.add(new RecordError(lines.lineNumber, 1, RecordError.LINE_TOO_LONG, lines.lineTooLongMessage(), -1, -1));
+					continue;
+				}
+				
+				int status = decoder.check(lines.buffer, lines.lineStart, lines.lineEnd);
+				if (status != RecordDecoder.OK)
+					errors.add(RecordError.fromDecoder(lines.lineNumber, decoder, status));
+			}
+		} finally {
+			lines.close();
+		}
+		return errors;
+	}
+	
+	/*
+	 *	Verifies the files concurrently, on a pool of at most concurrency threads made for
+	 *	the call, so the I/O waits of the files overlap.
+	 *
+	 *	@param filePathNames the files to verify
+	 *	@param maxErrors the number of incorrect lines after which a file is not checked further, at least 1
+	 *	@param concurrency the largest number of files verified at the same time
+	 *
+	 *	@throws InterruptedException if the thread is interrupted while waiting
+	 *
+	 *	@return the result of every file, in the order of filePathNames. A file which cannot be
+	 *	read has its IOException in the result, the other files are still verified.
+	 * */
+	public static List<FileVerification> verifyAll(Collection<String> filePathNames, int maxErrors, int concurrency) 
+			throws InterruptedException {
+		if (maxErrors <= 0)
+			throw new IllegalArgumentException("maxErrors should be positive: " + maxErrors);
+		if (concurrency <= 0)
+			throw new IllegalArgumentException("concurrency should be positive: " + concurrency);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(concurrency, filePathNames.size())));
+		try {
+			return BatchVerifier.verify(filePathNames, maxErrors, concurrency, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/*
+	 *	Verifies the files concurrently on the executor, with at most concurrency files at the
+	 *	same time whatever the number of threads of the executor. An executor making a thread
+	 *	per task, such as a virtual thread executor, needs no pool size of its own.
+	 *
+	 *	@param filePathNames the files to verify
+	 *	@param maxErrors the number of incorrect lines after which a file is not checked further, at least 1
+	 *	@param concurrency the largest number of files verified at the same time
+	 *	@param executor the executor the files are verified on, it is not shut down
+	 *
+	 *	@throws InterruptedException if the thread is interrupted while waiting
+	 *
+	 *	@return the result of every file, in the order of filePathNames
+	 * */
+	public static List<FileVerification> verifyAll(Collection<String> filePathNames, int maxErrors, int concurrency,
+			ExecutorService executor) throws InterruptedException {
+		return BatchVerifier.verify(filePathNames, maxErrors, concurrency, executor);
+	}
+	
+	/*
+	 *	Reads the memory contents described by the file. The records are decoded straight
+	 *	into the segments of the image, no IntelHexRecord is made.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException	
+	 *
+	 *	@return the memory image of the file.
+	 * */
+	public static MemoryImage readMemoryImage(String filePathName) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		MemoryImageLoader loader = new MemoryImageLoader();
+		IntelHexParser.parse(filePathName, loader);
+		loader.throwError();
+		return loader.image;
+	}
+	
+	/*
+	 *	Reads the memory contents described by the file without blocking the calling thread,
+	 *	the data is written to the image as the reads of an AsynchronousFileChannel complete.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@return the future of the memory image of the file, completed exceptionally with
+	 *	an IOException, CheckSumFailException or IncorrectRecordException
+	 * */
+	public static CompletableFuture<MemoryImage> readMemoryImageAsync(String filePathName) {
+		final MemoryImageLoader loader = new MemoryImageLoader();
+		return AsyncHexFile.parse(filePathName, loader, new Callable<MemoryImage>() {
+			@Override
+			public MemoryImage call() throws CheckSumFailException, IncorrectRecordException {
+				loader.throwError();
+				return loader.image;
+			}
+		});
+	}
+	
+	/*
+	 *	Reads the memory contents described by the file into off-heap pages, for files
+	 *	with data spread over the 32-bit address space. No IntelHexRecord is made.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException	
+	 *
+	 *	@return the paged memory image of the file.
+	 * */
+	public static PagedMemoryImage readPagedMemoryImage(String filePathName) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		PagedMemoryImageLoader loader = new PagedMemoryImageLoader();
+		IntelHexParser.parse(filePathName, loader);
+		loader.throwError();
+		return loader.image;
+	}
+	
+	/*
+	 *	Reads Intel HEX records from the file using all the threads of the common ForkJoinPool.
+	 *	Gives the same records as readRecordsFromFile.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException the first incorrect record of the file
+	 *
+	 *	@return an array of IntelHexRecord parsed from the file.
+	 * */
+	public static IntelHexRecord[] readRecordsFromFileParallel(String filePathName) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		return IntelHexFile.readRecordsFromFileParallel(filePathName, ForkJoinPool.commonPool());
+	}
+	
+	/*
+	 *	Reads Intel HEX records from the file on the given pool. The file is split in
+	 *	chunks at line boundaries and every chunk is mapped and decoded by its own task.
+	 *	Gives the same records as readRecordsFromFile.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *	@param pool the pool the chunks are decoded on
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException the first incorrect record of the file
+	 *
+	 *	@return an array of IntelHexRecord parsed from the file.
+	 * */
+	public static IntelHexRecord[] readRecordsFromFileParallel(String filePathName, ForkJoinPool pool) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ)) {
+			return ParallelRecordReader.read(channel, pool);
+		}
+	}
+	
+	/*
+	 *	Handler of the memory image readers, keeps the first error and stops there.
+	 * */
+	private static abstract class ImageLoader implements IntelHexHandler {
+		private Exception error;
+		
+		@Override
+		public void onEndOfFile() {
+		}
+		
+		@Override
+		public boolean onError(long lineNumber, Exception error) {
+			this.error = error;
+			return false;
+		}
+		
+		void throwError() throws CheckSumFailException, IncorrectRecordException {
+			if (this.error instanceof CheckSumFailException)
+				throw (CheckSumFailException) this.error;
+			if (this.error instanceof IncorrectRecordException)
+				throw (IncorrectRecordException) this.error;
+		}
+	}	
+	/*
+	 *	Loads the data and start address of a file into a MemoryImage.
+	 * */
+	private static final class MemoryImageLoader extends ImageLoader {
+		final MemoryImage image = new MemoryImage();
+		
+		@Override
+		public void onData(long address, byte[] data, int offset, int length) {
+			this.image.write(address, data, offset, length);
+		}
+		
+		@Override
+		public void onStartAddress(byte recordType, long address) {
+			this.image.setExecutionStartAddress(address);
+		}
+	}
+	
+	/*
+	 *	Loads the data and start address of a file into a PagedMemoryImage.
+	 * */
+	private static final class PagedMemoryImageLoader extends ImageLoader {
+		final PagedMemoryImage image = new PagedMemoryImage();
+		
+		@Override
+		public void onData(long address, byte[] data, int offset, int length) {
+			this.image.write(address, data, offset, length);
+		}
+		
+		@Override
+		public void onStartAddress(byte recordType, long address) {
+			this.image.setExecutionStartAddress(address);
+		}
 	}
 }
@@ -0,0 +1,69 @@
+/*******************************************************************************************************
+ * 	File Name: IntelHexHandler.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+/*
+ *	Receives the contents of an Intel HEX file from IntelHexParser as it is parsed.
+ *	The address records are applied by the parser, so the handler is only given
+ *	absolute addresses.
+ * */
+public interface IntelHexHandler {
+
+	/*
+	 *	Called for every data record.
+	 *	The array is reused for the next record, so the bytes have to be copied to be kept.
+	 *	The addresses wrap around at the end of the 32-bit address space, a record crossing it
+	 *	is passed in two calls, the second at address 0.
+	 *
+	 *	@param address the absolute address of the first data byte
+	 *	@param data the array containing the data bytes
+	 *	@param offset the index of the first data byte in the array
+	 *	@param length the number of data bytes
+	 * */
+	void onData(long address, byte[] data, int offset, int length);
+
+	/*
+	 *	Called for the end of file record.
+	 * */
+	void onEndOfFile();
+
+	/*
+	 *	Called for a start segment address or a start linear address record.
+	 *
+	 *	@param recordType RECORD_START_SEGMENT_ADDRESS or RECORD_START_LINEAR_ADDRESS
+	 *	@param address the 32-bit value of the record, CS:IP for a start segment address
+	 *	and EIP for a start linear address
+	 * */
+	void onStartAddress(byte recordType, long address);
+
+	/*
+	 *	Called for a line which is not a correct record.
+	 *
+	 *	@param lineNumber the number of the line starting from 1
+	 *	@param error the CheckSumFailException or IncorrectRecordException of the line
+	 *
+	 *	@return true to continue with the next line, false to stop parsing
+	 * */
+	boolean onError(long lineNumber, Exception error);
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************************************
+ * 	File Name: IntelHexParser.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+ *	Parses an Intel HEX file and pushes its contents to an IntelHexHandler.
+ *	No object is made for a record, the lines are decoded from the read buffer into
+ *	a single reused data array, so a correct file is parsed without any allocation
+ *	after the start.
+ *
+ *	The extended segment and extended linear address records are applied to
+ *	the addresses of the data records that follow them.
+ * */
+public class IntelHexParser {
+
+	private IntelHexParser() {
+	}
+
+	/*
+	 *	Parses the file.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *	@param handler the handler receiving the contents
+	 *
+	 *	@throws IOException
+	 *
+	 *	@return true if the whole file was parsed, false if the handler stopped it
+	 * */
+	public static boolean parse(String filePathName, IntelHexHandler handler) throws IOException {
+		return IntelHexParser.parse(FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ), handler);
+	}
+
+	/*
+	 *	Parses the stream, which is closed at the end.
+	 *
+	 *	@param in the stream of the Intel HEX file
+	 *	@param handler the handler receiving the contents
+	 *
+	 *	@throws IOException
+	 *
+	 *	@return true if the whole stream was parsed, false if the handler stopped it
+	 * */
+	public static boolean parse(InputStream in, IntelHexHandler handler) throws IOException {
+		return IntelHexParser.parse(Channels.newChannel(in), handler);
+	}
+
+	/*
+	 *	Parses the channel, which is closed at the end.
+	 *
+	 *	@param channel the channel of the Intel HEX file
+	 *	@param handler the handler receiving the contents
+	 *
+	 *	@throws IOException
+	 *
+	 *	@return true if the whole channel was parsed, false if the handler stopped it
+	 * */
+	public static boolean parse(ReadableByteChannel channel, IntelHexHandler handler) throws IOException {
+		LineScanner lines = new LineScanner(channel, IntelHexReader.DEFAULT_BUFFER_SIZE);
+		try {
+			return IntelHexParser.parse(lines, handler);
+		} finally {
+			lines.close();
+		}
+	}
+
+	/*
+	 *	Parses the bytes between the position and limit of the buffer, for example a mapped file.
+	 *	The buffer is read with absolute gets and is not modified.
+	 *
+	 *	@param buffer the buffer holding the Intel HEX file
+	 *	@param handler the handler receiving the contents
+	 *
+	 *	@return true if the whole buffer was parsed, false if the handler stopped it
+	 * */
+	public static boolean parse(ByteBuffer buffer, IntelHexHandler handler) {
+		try {
+			return IntelHexParser.parse(new LineScanner(buffer), handler);
+		} catch (IOException e) {
+			throw new IllegalStateException("No I/O is done for a buffer", e);
+		}
+	}
+
+	private static boolean parse(LineScanner lines, IntelHexHandler handler) throws IOException {
+		RecordDecoder decoder = new RecordDecoder();
+		long base = 0; // set by the extended segment and extended linear address records
+
+		for (;;) {
+			try {
+				if (!lines.nextLine())
+					return true;
+			} catch (IncorrectRecordException e) { // the line does not fit the buffer and is skipped
+				if (!handler.onError(lines.lineNumber, e))
+					return false;
+				continue;
+			}
+
+			int status = decoder.decode(lines.buffer, lines.lineStart, lines.lineEnd);
+			base = IntelHexParser.handleRecord(decoder, status, lines.lineNumber, base, handler);
+			if (base < 0)
+				return false;
+		}
+	}
+
+	/*
+	 *	Passes the line last decoded by the decoder to the handler.
+	 *
+	 *	@param decoder the decoder of the line
+	 *	@param status the status returned by decode
+	 *	@param lineNumber the number of the line
+	 *	@param base the base address in effect before the line
+	 *	@param handler the handler receiving the contents
+	 *
+	 *	@return the base address in effect after the line, or -1 if the handler stopped the parsing
+	 * */
+	static long handleRecord(RecordDecoder decoder, int status, long lineNumber, long base, IntelHexHandler handler) {
+		if (status != RecordDecoder.OK)
+			return handler.onError(lineNumber, decoder.exception(status)) ? base : -1;
+
+		switch (decoder.recordType) {
+		case IntelHexRecord.RECORD_DATA:
+			IntelHexParser.handleData(decoder, base, handler);
+			return base;
+		case IntelHexRecord.RECORD_END_OF_FILE:
+			handler.onEndOfFile();
+			return base;
+		case IntelHexRecord.RECORD_START_SEGMENT_ADDRESS:
+		case IntelHexRecord.RECORD_START_LINEAR_ADDRESS:
+			handler.onStartAddress((byte) decoder.recordType, decoder.dataValue());
+			return base;
+		default: // the extended address records, decode has rejected any other type
+			return decoder.nextBase(base);
+		}
+	}
+	/*
+	 *	Passes the data of the data record last decoded to the handler. The addresses wrap around
+	 *	at the end of the 32-bit address space, so the data of a record crossing it is passed in
+	 *	two parts, the second at address 0.
+	 * */
+	private static void handleData(RecordDecoder decoder, long base, IntelHexHandler handler) {
+		long address = (base + decoder.address()) & 0xFFFFFFFFL;
+		int length = (int) Math.min(decoder.byteCount, PagedMemoryImage.ADDRESS_LIMIT - address);
+		
+		handler.onData(address, decoder.data, 0, length);
+		if (length < decoder.byteCount)
+			handler.onData(0, decoder.data, length, decoder.byteCount - length);
+	}
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************************************
+ * 	File Name: IntelHexReader.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.CheckSumFailException;
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ *	Reads the records of an Intel HEX file one at a time.
+ *	Only a fixed size buffer is kept, so the memory used does not depend on the size of the file
+ *	and the first record is available as soon as its line has been read.
+ *	Lines end with "\r\n", "\n" or "\r" same as BufferedReader.readLine.
+ *	The extended address records are applied as the records are read, so getAbsoluteAddress
+ *	of every record returned is its full address.
+ *
+ *	The records can be pulled with readRecord() or with the iterator, which wraps the
+ *	checked exceptions in UncheckedIOException and UncheckedRecordException.
+ * */
+public class IntelHexReader implements Iterable<IntelHexRecord>, Closeable {
+
+	// Default size of the read buffer, the length of the longest line accepted, not counting
+	// its line terminator. Every reader of IntelHexFile rejects the longer lines.
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final LineScanner lines;
+	private final RecordDecoder decoder = new RecordDecoder();
+
+	// The base address set by the last extended address record
+	private long base;
+
+	// Record read ahead by the iterator's hasNext
+	private IntelHexRecord nextRecord;
+
+	/*
+	 *	Opens the file for reading.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 * */
+	public IntelHexReader(String filePathName) throws IOException {
+		this(FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ));
+	}
+
+	/*
+	 *	Reads the records from the stream, the stream is closed with the reader.
+	 *
+	 *	@param in the stream of the Intel HEX file
+	 * */
+	public IntelHexReader(InputStream in) {
+		this(Channels.newChannel(in));
+	}
+
+	/*
+	 *	Reads the records from the channel, the channel is closed with the reader.
+	 *
+	 *	@param channel the channel of the Intel HEX file
+	 * */
+	public IntelHexReader(ReadableByteChannel channel) {
+		this(channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	/*
+	 *	Reads the records from the channel, the channel is closed with the reader.
+	 *
+	 *	@param channel the channel of the Intel HEX file
+	 *	@param bufferSize the size of the read buffer, the length of the longest line accepted,
+	 *	not counting its line terminator
+	 * */
+	public IntelHexReader(ReadableByteChannel channel, int bufferSize) {
+		this.lines = new LineScanner(channel, bufferSize);
+	}
+
+	/*
+	 *	Reads the next record.
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException if the record or the line is incorrect, the reader
+	 *	continues with the next line when called again.
+	 *
+	 *	@return the next record, or null at the end of the input
+	 * */
+	public IntelHexRecord readRecord() throws IOException, CheckSumFailException, IncorrectRecordException {
+		if (this.nextRecord != null) {
+			IntelHexRecord toReturn = this.nextRecord;
+			this.nextRecord = null;
+			return toReturn;
+		}
+
+		if (!this.lines.nextLine())
+			return null;
+		int status = this.decoder.decode(this.lines.buffer, this.lines.lineStart, this.lines.lineEnd);
+		if (status != RecordDecoder.OK)
+			this.decoder.throwException(status);
+		
+		IntelHexRecord toReturn = new IntelHexRecord(this.decoder, this.base + this.decoder.address());
+		this.base = this.decoder.nextBase(this.base);
+		return toReturn;
+	}
+
+	/*
+	 *	Returns the number of lines consumed so far, which is the line number
+	 *	of the last record returned or rejected.
+	 *
+	 *	@return lineNumber
+	 * */
+	public long getLineNumber() {
+		return this.lines.lineNumber;
+	}
+
+	/*
+	 *	Returns an iterator over the remaining records. The checked exceptions of readRecord
+	 *	are thrown as UncheckedIOException and UncheckedRecordException.
+	 *
+	 *	@return an iterator over the records
+	 * */
+	@Override
+	public Iterator<IntelHexRecord> iterator() {
+		return new Iterator<IntelHexRecord>() {
+			@Override
+			public boolean hasNext() {
+				if (IntelHexReader.this.nextRecord == null)
+					IntelHexReader.this.nextRecord = IntelHexReader.this.readRecordUnchecked();
+				return IntelHexReader.this.nextRecord != null;
+			}
+
+			@Override
+			public IntelHexRecord next() {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				IntelHexRecord toReturn = IntelHexReader.this.nextRecord;
+				IntelHexReader.this.nextRecord = null;
+				return toReturn;
+			}
+		};
+	}
+
+	private IntelHexRecord readRecordUnchecked() {
+		try {
+			return this.readRecord();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (CheckSumFailException e) {
+			throw new UncheckedRecordException(e);
+		} catch (IncorrectRecordException e) {
+			throw new UncheckedRecordException(e);
+		}
+	}
+
+	/*
+	 *	Closes the underlying channel or stream.
+	 *
+	 *	@throws IOException
+	 * */
+	@Override
+	public void close() throws IOException {
+		this.lines.close();
+	}
+
+	/////////////////////// EXCEPTION CLASSES USED BY THE IntelHexReader CLASS ////////////////////////
+	public static class UncheckedRecordException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		
+		/*
+		 *	UncheckedRecordException: thrown by the iterator for a CheckSumFailException or
+		 *	an IncorrectRecordException, which is available as the cause.
+		 *
+		 *	@param cause the exception thrown by readRecord
+		 * */
+		UncheckedRecordException(Exception cause) {
+			super(cause.getMessage(), cause);
+		}
+	}
+}
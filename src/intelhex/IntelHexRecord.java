@@ -23,6 +23,12 @@
  ********************************************************************************************************/
 package intelhex;
 
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /*
  *	This class represent a single Record of Intel HEX file.
  *	Record is a single line of Intel HEX file.
@@ -34,7 +40,7 @@ package intelhex;
  * 	5- Data Sequence of n bytes (n hex pairs/2n chars)
  * 	6- Check Sum (a hex pair/two chars) for checking for errors in record.
  * */
-public class IntelHexRecord {
+public class IntelHexRecord implements RecordView {
 	
 	// The different type of records which is used in Intel HEX Records.
 	public static final byte RECORD_DATA 						= 0x00;
@@ -44,6 +50,9 @@ public class IntelHexRecord {
 	public static final byte RECORD_EXTENDED_LINEAR_ADDRESS 	= 0x04;
 	public static final byte RECORD_START_LINEAR_ADDRESS 		= 0x05;
 	
+	// The longest line: colon, 4 header bytes, 255 data bytes, check sum and "\r\n"
+	static final int MAX_LINE_LENGTH = 1 + 2 * (4 + 255 + 1) + 2;
+	
 	// The six fields of the Intel HEX Record as defined above in the comments.
 	private byte byteCount;
 	private byte addrH;
@@ -52,7 +61,11 @@ public class IntelHexRecord {
 	private byte[] dataSequence;
 	private byte checkSum;
 	
-	// String containing the record
+	// The address of the record including the base set by the preceding extended address record,
+	// an unsigned 32-bit value
+	private int absoluteAddress;
+	
+	// String containing the record, only kept for records made from a string
 	private String record;
 	
 	/*
@@ -63,13 +76,90 @@ public class IntelHexRecord {
 	 * @throws CheckSumFailException, IncorrectRecordException
 	 * */
 	public IntelHexRecord(String record) throws CheckSumFailException, IncorrectRecordException {
-		this.checkValidityOfRecord(record);
-		try { 	// Since the byteCount may be wrong and the size of record might be smaller
-			this.readAndStoreRecordFields(record);	
-		} catch (IndexOutOfBoundsException e) {
-			throw new IncorrectRecordException("IndexOutOfBounds: byteCount may be greater than the actual size of record");
-		}
-		this.checkCheckSum();
+		// The data array of the decoder is made for this record and kept as its dataSequence
+		RecordDecoder decoder = new RecordDecoder(0);
+		int status = decoder.decode(record, 0, record.length());
+		if (status != RecordDecoder.OK)
+			decoder.throwException(status);
+		
+		this.storeRecordFields(decoder, decoder.data);
+		this.record = record;
+	}
+	
+	/*
+	 *	Takes in the ASCII bytes of a single Intel HEX Record, without the line terminator.
+	 *	The record string is not kept, getRecord() regenerates it when asked for.
+	 *
+	 *	@param record an array containing the record
+	 *	@param offset the index of the colon ':' in the array
+	 *	@param length the number of bytes in the record
+	 *
+	 *	@throws CheckSumFailException, IncorrectRecordException
+	 * */
+	public IntelHexRecord(byte[] record, int offset, int length) 
+			throws CheckSumFailException, IncorrectRecordException {
+		this(ByteBuffer.wrap(record), offset, length);
+	}
+	
+	/*
+	 *	Takes in the ASCII bytes of a single Intel HEX Record, without the line terminator.
+	 *	The record is read with absolute gets, so the position and limit of the buffer are not changed.
+	 *	The record string is not kept, getRecord() regenerates it when asked for.
+	 *
+	 *	@param record a buffer containing the record
+	 *	@param offset the index of the colon ':' in the buffer
+	 *	@param length the number of bytes in the record
+	 *
+	 *	@throws CheckSumFailException, IncorrectRecordException
+	 * */
+	public IntelHexRecord(ByteBuffer record, int offset, int length) 
+			throws CheckSumFailException, IncorrectRecordException {
+		if (offset < 0 || length < 0 || offset > record.limit() - length)
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", limit " + record.limit());
+		
+		// The data array of the decoder is made for this record and kept as its dataSequence
+		RecordDecoder decoder = new RecordDecoder(0);
+		int status = decoder.decode(record, offset, offset + length);
+		if (status != RecordDecoder.OK)
+			decoder.throwException(status);
+		
+		this.storeRecordFields(decoder, decoder.data);
+	}
+	
+	/*
+	 *	Copies the fields of the record last decoded without error by the decoder.
+	 *
+	 *	@param decoder the decoder holding the record
+	 * */
+	IntelHexRecord(RecordDecoder decoder) {
+		this.storeRecordFields(decoder, Arrays.copyOf(decoder.data, decoder.byteCount));
+	}
+	
+	/*
+	 *	Copies the fields of the record last decoded without error by the decoder.
+	 *
+	 *	@param decoder the decoder holding the record
+	 *	@param absoluteAddress the address of the record including the base before it
+	 * */
+	IntelHexRecord(RecordDecoder decoder, long absoluteAddress) {
+		this(decoder);
+		this.absoluteAddress = (int) absoluteAddress;
+	}
+	
+	/*
+	 *	This method stores the fields of the record last decoded by the decoder in the class variables.
+	 *
+	 *	@param decoder the decoder holding the record
+	 *	@param dataSequence the data bytes of the record, not shared with the decoder if it is reused
+	 * */
+	private void storeRecordFields(RecordDecoder decoder, byte[] dataSequence) {
+		this.byteCount = (byte) decoder.byteCount;
+		this.addrH = (byte) decoder.addrH;
+		this.addrL = (byte) decoder.addrL;
+		this.recordType = (byte) decoder.recordType;
+		this.dataSequence = dataSequence;
+		this.checkSum = (byte) decoder.checkSum;
+		this.absoluteAddress = this.getAddress();
 	}
 	
 	/*
@@ -89,10 +179,11 @@ public class IntelHexRecord {
 		this.addrH = addrH;
 		this.addrL = addrL;
 		this.recordType = recordType;
-		this.dataSequence = dataSequence;
+		this.dataSequence = dataSequence == null ? new byte[0] : dataSequence;
 		this.checkSum = this.calculateCheckSum();
 		
-		this.record = IntelHexRecord.makeRecord(byteCount, addrH, addrL, recordType, dataSequence);
+		IntelHexRecord.checkByteCount(byteCount, dataSequence);
+		this.absoluteAddress = this.getAddress();
 	}
 	
 	/*
@@ -110,21 +201,208 @@ public class IntelHexRecord {
 	 * */
 	public static String makeRecord(byte byteCount, byte addrH, byte addrL,
 			byte recordType, byte[] dataSequence) throws IncorrectRecordException {
-		String toReturn;
+		IntelHexRecord.checkByteCount(byteCount, dataSequence);
+		
+		return IntelHexRecord.formatRecord(byteCount, addrH, addrL, recordType, dataSequence);
+	}
+	
+	/*
+	 *	Writes a Record as ASCII bytes to the array, without a line terminator.
+	 *	Nothing is allocated, the array needs room for 11 + 2 * byteCount bytes.
+	 *
+	 *	@param byteCount The number of bytes in the data field
+	 *	@param addrH The 8 upper bits of 16-bit address
+	 *	@param addrL The 8 lower bits of 16-bit address
+	 *	@param recordType The record type of the current record
+	 *	@param dataSequence An array containing the data bytes 
+	 *	@param out the array the record is written to
+	 *	@param offset the index of the colon ':' in the array
+	 *
+	 *	@throws IncorrectRecordException
+	 *
+	 *	@return the index after the last byte of the record
+	 * */
+	public static int encodeRecord(byte byteCount, byte addrH, byte addrL,
+			byte recordType, byte[] dataSequence, byte[] out, int offset) throws IncorrectRecordException {
+		int length = IntelHexRecord.checkByteCount(byteCount, dataSequence);
+		
+		return IntelHexRecord.encode(out, offset, recordType & 0xff, ((addrH & 0xff) << 8) | (addrL & 0xff),
+				dataSequence, 0, length);
+	}
+	
+	/*
+	 *	Writes a Record as ASCII bytes at the position of the buffer, without a line terminator,
+	 *	and moves the position after it. Nothing is allocated.
+	 *
+	 *	@param byteCount The number of bytes in the data field
+	 *	@param addrH The 8 upper bits of 16-bit address
+	 *	@param addrL The 8 lower bits of 16-bit address
+	 *	@param recordType The record type of the current record
+	 *	@param dataSequence An array containing the data bytes 
+	 *	@param out the buffer the record is written to
+	 *
+	 *	@throws IncorrectRecordException
+	 *	@throws BufferOverflowException if the buffer has less than 11 + 2 * byteCount bytes remaining
+	 * */
+	public static void encodeRecord(byte byteCount, byte addrH, byte addrL,
+			byte recordType, byte[] dataSequence, ByteBuffer out) throws IncorrectRecordException {
+		int length = IntelHexRecord.checkByteCount(byteCount, dataSequence);
+		int size = 11 + 2 * length;
+		if (out.remaining() < size)
+			throw new BufferOverflowException();
+		
+		if (out.hasArray()) {
+			IntelHexRecord.encode(out.array(), out.arrayOffset() + out.position(), recordType & 0xff,
+					((addrH & 0xff) << 8) | (addrL & 0xff), dataSequence, 0, length);
+			out.position(out.position() + size);
+			return;
+		}
+		
+		int sum = length + addrH + addrL + recordType;
+		out.put((byte) ':');
+		IntelHexRecord.putPair(length, out);
+		IntelHexRecord.putPair(addrH, out);
+		IntelHexRecord.putPair(addrL, out);
+		IntelHexRecord.putPair(recordType, out);
+		for (int i = 0; i < length; i++) {
+			sum += dataSequence[i];
+			IntelHexRecord.putPair(dataSequence[i], out);
+		}
+		IntelHexRecord.putPair(-sum, out);
+	}
+	
+	/*
+	 *	Appends a Record to the Appendable, such as a StringBuilder or a Writer, without
+	 *	a line terminator. Nothing is allocated for the record.
+	 *
+	 *	@param byteCount The number of bytes in the data field
+	 *	@param addrH The 8 upper bits of 16-bit address
+	 *	@param addrL The 8 lower bits of 16-bit address
+	 *	@param recordType The record type of the current record
+	 *	@param dataSequence An array containing the data bytes 
+	 *	@param out the Appendable the record is appended to
+	 *
+	 *	@throws IncorrectRecordException
+	 *	@throws IOException if thrown by the Appendable
+	 * */
+	public static void encodeRecord(byte byteCount, byte addrH, byte addrL,
+			byte recordType, byte[] dataSequence, Appendable out) throws IncorrectRecordException, IOException {
+		int length = IntelHexRecord.checkByteCount(byteCount, dataSequence);
+		
+		int sum = length + addrH + addrL + recordType;
+		out.append(':');
+		IntelHexRecord.appendPair(length, out);
+		IntelHexRecord.appendPair(addrH, out);
+		IntelHexRecord.appendPair(addrL, out);
+		IntelHexRecord.appendPair(recordType, out);
+		for (int i = 0; i < length; i++) {
+			sum += dataSequence[i];
+			IntelHexRecord.appendPair(dataSequence[i], out);
+		}
+		IntelHexRecord.appendPair(-sum, out);
+	}
+	
+	/*
+	 *	Checks that the byteCount is the length of the dataSequence, a null dataSequence has no bytes.
+	 *
+	 *	@throws IncorrectRecordException
+	 *
+	 *	@return the number of data bytes
+	 * */
+	private static int checkByteCount(byte byteCount, byte[] dataSequence) throws IncorrectRecordException {
+		int length = dataSequence == null ? 0 : dataSequence.length;
 		
 		// If the byteCount and the size of dataSquence are not same throw exception
-		if (byteCount != 0 && (dataSequence == null || byteCount != dataSequence.length))
+		if ((byteCount & 0xff) != length)
 			throw new IntelHexRecord.IncorrectRecordException("byteCount does not match the length of dataSequence.");
+		return length;
+	}
+	
+	private static void putPair(int value, ByteBuffer out) {
+		char pair = HexCodec.pair(value);
+		out.put((byte) (pair >>> 8));
+		out.put((byte) pair);
+	}
+	
+	private static void appendPair(int value, Appendable out) throws IOException {
+		char pair = HexCodec.pair(value);
+		out.append((char) (pair >>> 8));
+		out.append((char) (pair & 0xFF));
+	}
+	
+	/*
+	 *	Formats the fields as a record string, the fields are expected to be consistent.
+	 *
+	 *	@return the Intel HEX record string
+	 * */
+	private static String formatRecord(byte byteCount, byte addrH, byte addrL,
+			byte recordType, byte[] dataSequence) {
+		int length = dataSequence == null ? 0 : dataSequence.length;
+		byte[] out = new byte[11 + 2 * length];
+		
+		IntelHexRecord.encode(out, 0, recordType & 0xff, ((addrH & 0xff) << 8) | (addrL & 0xff),
+				dataSequence, 0, length);
+		return new String(out, StandardCharsets.US_ASCII);
+	}
+	
+	/*
+	 *	Writes a record as ASCII bytes to the array, without a line terminator.
+	 *	The array should have room for 11 + 2 * length bytes.
+	 *
+	 *	@param out the array the record is written to
+	 *	@param index the index of the colon ':' in the array
+	 *	@param recordType The record type of the record
+	 *	@param address The 16-bit address of the record
+	 *	@param data An array containing the data bytes
+	 *	@param offset the index of the first data byte in data
+	 *	@param length the number of data bytes, at most 255
+	 *
+	 *	@return the index after the last byte of the record
+	 * */
+	static int encode(byte[] out, int index, int recordType, int address,
+			byte[] data, int offset, int length) {
+		int sum = length + (address >>> 8) + address + recordType;
 		
-		toReturn = String.format(":%02X%02X%02X%02X", byteCount, addrH, addrL, recordType);
+		out[index++] = ':';
+		index = HexCodec.encodePair(length, out, index);
+		index = HexCodec.encodePair(address >>> 8, out, index);
+		index = HexCodec.encodePair(address, out, index);
+		index = HexCodec.encodePair(recordType, out, index);
 		
-		for (int i = 0; i < dataSequence.length; i++) {
-			toReturn += String.format("%02X", dataSequence[i]);
+		for (int i = offset, end = offset + length; i < end; i++) {
+			sum += data[i];
+			index = HexCodec.encodePair(data[i], out, index);
 		}
 		
-		toReturn += String.format("%02X", IntelHexRecord.calculateCheckSum(byteCount, addrH, addrL,
-				recordType, dataSequence));
-		return toReturn;
+		return HexCodec.encodePair(-sum, out, index);
+	}
+	
+	/*
+	 *	Writes a record as ASCII bytes at the position of the buffer, without a line terminator.
+	 *	The buffer should have 11 + 2 * length bytes remaining and be in big endian order.
+	 *
+	 *	@param out the buffer the record is written to
+	 *	@param recordType The record type of the record
+	 *	@param address The 16-bit address of the record
+	 *	@param data An array containing the data bytes
+	 *	@param offset the index of the first data byte in data
+	 *	@param length the number of data bytes, at most 255
+	 * */
+	static void encode(ByteBuffer out, int recordType, int address, byte[] data, int offset, int length) {
+		int sum = length + (address >>> 8) + address + recordType;
+		
+		out.put((byte) ':');
+		HexCodec.encodePair(length, out);
+		HexCodec.encodePair(address >>> 8, out);
+		HexCodec.encodePair(address, out);
+		HexCodec.encodePair(recordType, out);
+		
+		for (int i = offset, end = offset + length; i < end; i++) {
+			sum += data[i];
+			HexCodec.encodePair(data[i], out);
+		}
+		
+		HexCodec.encodePair(-sum, out);
 	}
 	
 	/*
@@ -136,13 +414,13 @@ public class IntelHexRecord {
 	public String toString() {
 		String toReturn;
 		
-		toReturn = String.format("Record: %02X\n", this.record);
+		toReturn = String.format("Record: %s\n", this.getRecord());
 		toReturn += String.format("Byte Count: %02X\n", this.byteCount);
 		toReturn += String.format("Address High: %02X\n", this.addrH);
 		toReturn += String.format("Address Low: %02X\n", this.addrL);
 		toReturn += String.format("Record Type: %02X\n", this.recordType);
 		toReturn += String.format("Check Sum: %02X\n", this.checkSum);
-		toReturn += String.format("Record: %02X\n", this.record);
+		toReturn += String.format("Record: %s\n", this.getRecord());
 		
 		toReturn += "Data Bytes:: \n";
 		for (int i = 0; i < this.dataSequence.length; i++) {
@@ -152,62 +430,14 @@ public class IntelHexRecord {
 	}
 	
 	/*
-	 *	Checks to see if there is any characters not matching Hex representation
-	 *	
-	 *	@param record String of the record
+	 *	Sets the absolute address of this record from the base of the records before it,
+	 *	wrapping around at the end of the 32-bit address space. The base after it is given
+	 *	by RecordDecoder.nextBase.
 	 *
-	 *	@throw IncorrectRecordException
+	 *	@param base the base address in effect before this record, 0 at the start of a file
 	 * */
-	private void checkValidityOfRecord(String record) throws IncorrectRecordException {
-		for (int i = 1, n = record.length(); i < n; i++) {
-			char ch = record.charAt(i);
-			if (ch >= '0' && ch <= '9')
-				continue;
-			else if (ch >= 'A' && ch <= 'F')
-				continue;
-			else if (ch >= 'a' && ch <= 'f')
-				continue;
-			else
-				throw new IncorrectRecordException(ch, i);
-		}
-	}
-	
-	/*
-	 *	This method stores the different fields of the record in the class variables.
-	 *	
-	 *	@param record String representing a single record
-	 *
-	 *	@throws IncorrectRecordException
-	 * */
-	private void readAndStoreRecordFields(String record) throws IncorrectRecordException {
-		int i = 0; // index of the current record character
-		
-		// Storing the record in class variable
-		this.record = record;
-		
-		// The first character of a record should be a ':'
-		if (this.record.charAt(i++) != ':')
-			throw new IncorrectRecordException("Record should start with a colon \":\"");
-		
-		// The next two character are the number of bytes
-		this.byteCount = this.combineCharToByte(this.record.charAt(i++), this.record.charAt(i++));
-		
-		// Next are 2 bytes / 4 chars of address
-		this.addrH = this.combineCharToByte(this.record.charAt(i++), this.record.charAt(i++));
-		this.addrL = this.combineCharToByte(this.record.charAt(i++), this.record.charAt(i++));
-		
-		// Next is the record type 
-		this.recordType = this.combineCharToByte(this.record.charAt(i++), this.record.charAt(i++));
-		
-		// Next are the data sequence
-		this.dataSequence = new byte[this.byteCount];
-
-		for (int j = 0; j < this.byteCount; i+=2, j++) {
-			this.dataSequence[j] = this.combineCharToByte(this.record.charAt(i), this.record.charAt(i+1));
-		}
-		
-		// Next is the actual record check sum
-		this.checkSum = this.combineCharToByte(this.record.charAt(i++), this.record.charAt(i++));
+	void resolveAddress(long base) {
+		this.absoluteAddress = (int) (base + this.getAddress());
 	}
 	
 	/*
@@ -233,52 +463,31 @@ public class IntelHexRecord {
 	 * */
 	public static byte calculateCheckSum(byte byteCount, byte addrH, byte addrL,
 			byte recordType, byte[] dataSequence) {
-		byte calculateCheckSum = (byte) (byteCount + addrH + addrL + recordType);
+		// Summed in an int, only the low 8 bits matter, which the JIT can vectorize unlike a byte sum
+		int calculateCheckSum = byteCount + addrH + addrL + recordType;
 		
 		if (dataSequence != null) {
 			for (int i = 0, n = dataSequence.length; i < n; i++) {
 				calculateCheckSum += dataSequence[i];
 			}
 		}
-		calculateCheckSum = (byte) -calculateCheckSum; // taking the 2's compliment which is simple as taking negative
 		
-		return calculateCheckSum;
-	}
-	
-	/*
-	 *	Checks if the actual checkSum is equal to the calculated.
-	 *	
-	 *	@throws CheckSumFailException if the two CheckSums donot match
-	 * */
-	private void checkCheckSum() throws CheckSumFailException {
-		byte calculatedCheckSum = this.calculateCheckSum();
-		if (calculatedCheckSum != this.checkSum) 
-			throw new CheckSumFailException(calculatedCheckSum, this.checkSum);
-	}
-	
-	/*
-	 *	Combines the ch1 and ch2 and returns the byte representation of them
-	 *	eg. ch1 = A & ch2 = F, the result will be byte 0xAF
-	 *
-	 *	@param ch1 the 4 MSBits
-	 *	@param ch2 the 4 LSBits
-	 *
-	 *	@return the byte representation of combination of ch1 & ch2
-	 * */
-	private byte combineCharToByte(char ch1, char ch2) {
-		String temp = String.valueOf(ch1) + String.valueOf(ch2);
-		byte toReturn = (byte) (Integer.parseInt(temp, 16) & 0xff);
-		return toReturn;
+		return (byte) -calculateCheckSum; // taking the 2's compliment which is simple as taking negative
 	}
 	
 	/////////////////////////////// GETTER METHODS ////////////////////////////////
 	/*
 	 *	Returns the record formatted string.
+	 *	Only records made from a string keep it, for the others it is built from the fields
+	 *	on every call, in upper case hex, so a record holds little more than its data bytes.
 	 *	
 	 *	@return record
 	 * */
 	public String getRecord() {
-		return this.record;
+		if (this.record != null)
+			return this.record;
+		return IntelHexRecord.formatRecord(this.byteCount, this.addrH, this.addrL,
+				this.recordType, this.dataSequence);
 	}
 	
 	/*
@@ -308,6 +517,26 @@ public class IntelHexRecord {
 		return this.addrL;
 	}
 	
+	/*
+	 *	Returns the 16-bit address made of addrH and addrL.
+	 *	
+	 *	@return address
+	 * */
+	public int getAddress() {
+		return ((this.addrH & 0xff) << 8) | (this.addrL & 0xff);
+	}
+	
+	/*
+	 *	Returns the 32-bit address of the record. For records read from a file it includes
+	 *	the base set by the extended segment or extended linear address record before it,
+	 *	otherwise it is the 16-bit address.
+	 *	
+	 *	@return absoluteAddress
+	 * */
+	public long getAbsoluteAddress() {
+		return this.absoluteAddress & 0xFFFFFFFFL;
+	}
+	
 	/*
 	 *	Returns the record variable
 	 *	
@@ -326,6 +555,19 @@ public class IntelHexRecord {
 		return this.dataSequence;
 	}
 	
+	/*
+	 *	Copies the data bytes to the array.
+	 *	
+	 *	@param dest the array the data bytes are copied to
+	 *	@param offset the index in dest of the first data byte
+	 *
+	 *	@return the number of data bytes copied
+	 * */
+	public int getData(byte[] dest, int offset) {
+		System.arraycopy(this.dataSequence, 0, dest, offset, this.dataSequence.length);
+		return this.dataSequence.length;
+	}
+	
 	/*
 	 *	Returns the Check Sum
 	 *	
@@ -0,0 +1,322 @@
+/*******************************************************************************************************
+ * 	File Name: IntelHexWriter.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/*
+ *	Writes binary data as an Intel HEX file in a single pass.
+ *	The data is split in records of at most getBytesPerRecord() bytes which never cross
+ *	a 64 KB boundary, and the extended linear (or extended segment) address records are
+ *	written whenever the upper address bits change. The records are encoded straight into
+ *	the output buffer, no IntelHexRecord or String is made.
+ *	Every line ends with "\r\n" same as writeRecordsToFile.
+ * */
+public class IntelHexWriter implements Closeable, Flushable {
+
+	// Default number of data bytes per record
+	public static final int DEFAULT_BYTES_PER_RECORD = 16;
+
+	// Size of the output buffer
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// Used to copy data which is not in an array, such as a ByteBuffer or a memory image
+	private final byte[] scratch = new byte[255];
+
+	// The data bytes of the address records
+	private final byte[] addressBytes = new byte[2];
+
+	private int bytesPerRecord = DEFAULT_BYTES_PER_RECORD;
+	private byte addressRecordType = IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS;
+
+	// The base written by the last address record, the start of a file is base 0
+	private long base;
+	private boolean endOfFileWritten;
+
+	/*
+	 *	Creates or replaces the file.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 * */
+	public IntelHexWriter(String filePathName) throws IOException {
+		this(FileChannel.open(Paths.get(filePathName), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/*
+	 *	Writes to the stream, the stream is closed with the writer.
+	 *
+	 *	@param out the stream the file is written to
+	 * */
+	public IntelHexWriter(OutputStream out) {
+		this(Channels.newChannel(out));
+	}
+
+	/*
+	 *	Writes to the channel, the channel is closed with the writer.
+	 *
+	 *	@param channel the channel the file is written to
+	 * */
+	public IntelHexWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	/*
+	 *	Sets the largest number of data bytes in a record.
+	 *
+	 *	@param bytesPerRecord from 1 to 255, usually 16 or 32
+	 * */
+	public void setBytesPerRecord(int bytesPerRecord) {
+		if (bytesPerRecord < 1 || bytesPerRecord > 255)
+			throw new IllegalArgumentException("bytesPerRecord should be from 1 to 255: " + bytesPerRecord);
+		this.bytesPerRecord = bytesPerRecord;
+	}
+
+	/*
+	 *	Returns the largest number of data bytes in a record.
+	 *
+	 *	@return bytesPerRecord
+	 * */
+	public int getBytesPerRecord() {
+		return this.bytesPerRecord;
+	}
+
+	/*
+	 *	Sets the type of the records written for addresses above 64 KB. Extended segment
+	 *	addresses only reach 1 MB and are used for 8086 style files.
+	 *
+	 *	@param addressRecordType RECORD_EXTENDED_LINEAR_ADDRESS (the default) or RECORD_EXTENDED_SEGMENT_ADDRESS
+	 * */
+	public void setAddressRecordType(byte addressRecordType) {
+		if (addressRecordType != IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS
+				&& addressRecordType != IntelHexRecord.RECORD_EXTENDED_SEGMENT_ADDRESS)
+			throw new IllegalArgumentException("Not an extended address record type: " + addressRecordType);
+		this.addressRecordType = addressRecordType;
+	}
+
+	/*
+	 *	Writes the data records of the bytes starting at the address.
+	 *
+	 *	@param address the absolute address of the first byte
+	 *	@param data the array containing the bytes
+	 *	@param offset the index of the first byte in the array
+	 *	@param length the number of bytes
+	 *
+	 *	@throws IOException
+	 * */
+	public void writeData(long address, byte[] data, int offset, int length) throws IOException {
+		while (length > 0) {
+			int n = this.recordLength(address, length);
+			this.writeRecord(address, data, offset, n);
+			address += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/*
+	 *	Writes the data records of the bytes between the position and limit of the buffer,
+	 *	the buffer's position is moved to its limit.
+	 *
+	 *	@param address the absolute address of the first byte
+	 *	@param data the buffer containing the bytes
+	 *
+	 *	@throws IOException
+	 * */
+	public void writeData(long address, ByteBuffer data) throws IOException {
+		if (data.hasArray()) {
+			int length = data.remaining();
+			this.writeData(address, data.array(), data.arrayOffset() + data.position(), length);
+			data.position(data.limit());
+			return;
+		}
+
+		while (data.hasRemaining()) {
+			int n = this.recordLength(address, data.remaining());
+			data.get(this.scratch, 0, n);
+			this.writeRecord(address, this.scratch, 0, n);
+			address += n;
+		}
+	}
+
+	/*
+	 *	Writes the data records of every segment of the image and its start address record, if any.
+	 *
+	 *	@param image the memory image
+	 *
+	 *	@throws IOException
+	 * */
+	public void writeImage(MemoryImage image) throws IOException {
+		for (MemoryImage.Segment segment : image) {
+			long address = segment.getStartAddress();
+			for (int index = 0, length = segment.getLength(); index < length; ) {
+				int n = this.recordLength(address, length - index);
+				segment.read(index, this.scratch, 0, n);
+				this.writeRecord(address, this.scratch, 0, n);
+				address += n;
+				index += n;
+			}
+		}
+		if (image.getExecutionStartAddress() != MemoryImage.NO_START_ADDRESS)
+			this.writeStartAddress(image.getExecutionStartAddress());
+	}
+
+	/*
+	 *	Writes the data records of every run of written bytes of the image and its start
+	 *	address record, if any.
+	 *
+	 *	@param image the paged memory image
+	 *
+	 *	@throws IOException
+	 * */
+	public void writeImage(PagedMemoryImage image) throws IOException {
+		for (long address = image.nextDefinedAddress(0); address >= 0; ) {
+			long end = image.nextGapAddress(address);
+			while (address < end) {
+				int n = this.recordLength(address, (int) Math.min(end - address, 255));
+				image.read(address, this.scratch, 0, n, (byte) 0);
+				this.writeRecord(address, this.scratch, 0, n);
+				address += n;
+			}
+			address = image.nextDefinedAddress(end);
+		}
+		if (image.getExecutionStartAddress() != PagedMemoryImage.NO_START_ADDRESS)
+			this.writeStartAddress(image.getExecutionStartAddress());
+	}
+
+	/*
+	 *	Writes a start address record, a start linear address record when using extended
+	 *	linear addresses and a start segment address record (CS:IP) otherwise.
+	 *
+	 *	@param address the 32-bit value of the record
+	 *
+	 *	@throws IOException
+	 * */
+	public void writeStartAddress(long address) throws IOException {
+		byte recordType = this.addressRecordType == IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS 
+				? IntelHexRecord.RECORD_START_LINEAR_ADDRESS : IntelHexRecord.RECORD_START_SEGMENT_ADDRESS;
+		this.scratch[0] = (byte) (address >>> 24);
+		this.scratch[1] = (byte) (address >>> 16);
+		this.scratch[2] = (byte) (address >>> 8);
+		this.scratch[3] = (byte) address;
+		this.writeLine(recordType, 0, this.scratch, 0, 4);
+	}
+
+	/*
+	 *	Writes the end of file record, nothing should be written after it.
+	 *
+	 *	@throws IOException
+	 * */
+	public void writeEndOfFile() throws IOException {
+		this.writeLine(IntelHexRecord.RECORD_END_OF_FILE, 0, this.scratch, 0, 0);
+		this.endOfFileWritten = true;
+	}
+
+	/*
+	 *	Writes the buffered lines to the channel.
+	 *
+	 *	@throws IOException
+	 * */
+	@Override
+	public void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/*
+	 *	Writes the end of file record if it was not written yet, flushes and closes the channel.
+	 *
+	 *	@throws IOException
+	 * */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!this.endOfFileWritten)
+				this.writeEndOfFile();
+			this.flush();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/*
+	 *	Returns how many of the bytes fit in the next record, records stop at 64 KB boundaries.
+	 * */
+	private int recordLength(long address, int length) {
+		int toBoundary = 0x10000 - (int) (address & 0xFFFF);
+		return Math.min(Math.min(length, this.bytesPerRecord), toBoundary);
+	}
+
+	/*
+	 *	Writes a data record, preceded by an address record if its upper address bits differ from the base.
+	 * */
+	private void writeRecord(long address, byte[] data, int offset, int length) throws IOException {
+		this.checkRange(address, length);
+		
+		long recordBase = address & ~0xFFFFL;
+		if (recordBase != this.base) {
+			long value = this.addressRecordType == IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS 
+					? recordBase >>> 16 : recordBase >>> 4;
+			this.addressBytes[0] = (byte) (value >>> 8);
+			this.addressBytes[1] = (byte) value;
+			this.writeLine(this.addressRecordType, 0, this.addressBytes, 0, 2);
+			this.base = recordBase;
+		}
+		this.writeLine(IntelHexRecord.RECORD_DATA, (int) (address & 0xFFFF), data, offset, length);
+	}
+
+	private void writeLine(int recordType, int address, byte[] data, int offset, int length) throws IOException {
+		if (this.buffer.remaining() < IntelHexRecord.MAX_LINE_LENGTH)
+			this.flush();
+
+		byte[] out = this.buffer.array();
+		int index = IntelHexRecord.encode(out, this.buffer.position(), recordType, address, data, offset, length);
+		out[index++] = '\r';
+		out[index++] = '\n';
+		this.buffer.position(index);
+	}
+
+	private void checkRange(long address, int length) {
+		long limit = this.addressRecordType == IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS ? 1L << 32 : 1L << 20;
+		if (address < 0 || length < 0 || address + length > limit)
+			throw new IllegalArgumentException("Range " + address + " + " + length + " does not fit the address records");
+	}
+}
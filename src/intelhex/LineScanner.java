@@ -0,0 +1,241 @@
+/*******************************************************************************************************
+ * 	File Name: LineScanner.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/*
+ *	Splits ASCII input into lines without copying them.
+ *	Lines end with "\r\n", "\n" or "\r" same as BufferedReader.readLine.
+ *	After nextLine() the current line is buffer[lineStart, lineEnd), it stays valid
+ *	until the next call.
+ *	A line longer than maxLineLength bytes, not counting its line terminator, is rejected
+ *	whether it is read from a channel or from a buffer, so every reader accepts the same lines.
+ * */
+final class LineScanner {
+
+	final ByteBuffer buffer;
+
+	// The length of the longest line accepted
+	private final int maxLineLength;
+
+	// The channel the buffer is filled from, null if the buffer holds the whole input
+	private final ReadableByteChannel channel;
+
+	private boolean endOfInput;
+
+	// true after a line ended by a '\r' at the end of the read bytes, a '\n' read next is skipped
+	private boolean skipLineFeed;
+
+	// Number of lines returned so far, the line number of the current line
+	long lineNumber;
+
+	int lineStart;
+	int lineEnd;
+
+	/*
+	 *	Scans the lines read from the channel.
+	 *
+	 *	@param channel the input
+	 *	@param maxLineLength the length of the longest line accepted, not counting its line terminator,
+	 *	the read buffer holds one byte more
+	 * */
+	LineScanner(ReadableByteChannel channel, int maxLineLength) {
+		if (maxLineLength <= 0 || maxLineLength == Integer.MAX_VALUE)
+			throw new IllegalArgumentException("maxLineLength should be positive and less than Integer.MAX_VALUE: "
+					+ maxLineLength);
+
+		this.channel = channel;
+		this.maxLineLength = maxLineLength;
+		this.buffer = ByteBuffer.allocate(maxLineLength + 1);
+		this.buffer.flip(); // starts empty
+	}
+
+	/*
+	 *	Scans the lines between the position and limit of the input, which is not modified.
+	 *	The line indices are indices of the input buffer.
+	 *
+	 *	@param input the whole input
+	 * */
+	LineScanner(ByteBuffer input) {
+		this(input, true);
+	}
+
+	/*
+	 *	Scans the lines between the position and limit of the input, which is not modified.
+	 *	The line indices are indices of the input buffer. The longest line accepted is
+	 *	IntelHexReader.DEFAULT_BUFFER_SIZE bytes long, same as for the readers of a channel.
+	 *
+	 *	@param input a part of the input
+	 *	@param endOfInput false if more input follows, then an unterminated last line is not
+	 *	returned and buffer.position() is left at its start
+	 * */
+	LineScanner(ByteBuffer input, boolean endOfInput) {
+		this.channel = null;
+		this.maxLineLength = IntelHexReader.DEFAULT_BUFFER_SIZE;
+		this.buffer = input.duplicate();
+		this.endOfInput = endOfInput;
+	}
+
+	/*
+	 *	Moves to the next line.
+	 *
+	 *	@throws IOException
+	 *	@throws IncorrectRecordException if the line is longer than maxLineLength, the line is
+	 *	read past and counted, and the next call continues with the line after it
+	 *
+	 *	@return false at the end of the input
+	 * */
+	boolean nextLine() throws IOException, IncorrectRecordException {
+		if (this.skipLineFeed) {
+			this.skipLineFeed = false;
+			if (!this.buffer.hasRemaining() && !this.endOfInput)
+				this.fill();
+			if (this.buffer.hasRemaining() && this.buffer.get(this.buffer.position()) == '\n')
+				this.buffer.position(this.buffer.position() + 1);
+		}
+
+		int scanned = 0; // bytes of the current line already searched for its end
+		for (;;) {
+			int start = this.buffer.position();
+			int limit = this.buffer.limit();
+
+			for (int i = start + scanned; i < limit; i++) {
+				byte b = this.buffer.get(i);
+				if (b != '\n' && b != '\r')
+					continue;
+
+				int next = i + 1;
+				if (b == '\r' && next == limit && !this.endOfInput) {
+					// A '\n' following the '\r' is still not read, a part of the input ends here
+					// and the next part starts with it, otherwise it is skipped once read
+					if (this.channel == null)
+						break;
+					this.skipLineFeed = true;
+				} else if (b == '\r' && next < limit && this.buffer.get(next) == '\n') {
+					next++;
+				}
+
+				this.buffer.position(next);
+				return this.setLine(start, i);
+			}
+
+			if (this.endOfInput) {
+				if (start == limit)
+					return false;
+				this.buffer.position(limit);
+				return this.setLine(start, limit);
+			}
+
+			if (this.channel == null)
+				return false;
+
+			if (limit - start == this.buffer.capacity()) {
+				this.skipLine();
+				this.lineNumber++;
+				throw new IncorrectRecordException(this.lineTooLongMessage());
+			}
+			scanned = Math.max(0, limit - start - 1);
+			this.fill();
+		}
+	}
+
+	private boolean setLine(int start, int end) throws IncorrectRecordException {
+		this.lineNumber++;
+		if (end - start > this.maxLineLength)
+			throw new IncorrectRecordException(this.lineTooLongMessage());
+
+		this.lineStart = start;
+		this.lineEnd = end;
+		return true;
+	}
+
+	/*
+	 *	Reads until the end of a line which fills the whole buffer, so the next line starts
+	 *	at the position. The bytes of the line are dropped as they are read.
+	 *
+	 *	@throws IOException
+	 * */
+	private void skipLine() throws IOException {
+		// The buffer holds no line terminator
+		for (;;) {
+			this.buffer.position(this.buffer.limit());
+			this.fill();
+			int limit = this.buffer.limit();
+			if (limit == 0) // the end of the input
+				return;
+
+			for (int i = 0; i < limit; i++) {
+				byte b = this.buffer.get(i);
+				if (b == '\n' || b == '\r') {
+					this.buffer.position(i + 1);
+					this.skipLineFeed = b == '\r';
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 *	Describes a line longer than maxLineLength.
+	 *
+	 *	@return the message of the IncorrectRecordException thrown by nextLine
+	 * */
+	String lineTooLongMessage() {
+		return "Line is longer than " + this.maxLineLength + " bytes";
+	}
+
+	/*
+	 *	Moves the unconsumed bytes to the start of the buffer and reads more after them.
+	 *
+	 *	@throws IOException
+	 * */
+	private void fill() throws IOException {
+		this.buffer.compact();
+		try {
+			int n;
+			while ((n = this.channel.read(this.buffer)) == 0) {
+				// a non blocking channel may have nothing yet
+			}
+			if (n < 0)
+				this.endOfInput = true;
+		} finally {
+			this.buffer.flip();
+		}
+	}
+
+	/*
+	 *	Closes the channel, if any.
+	 *
+	 *	@throws IOException
+	 * */
+	void close() throws IOException {
+		if (this.channel != null)
+			this.channel.close();
+	}
+}
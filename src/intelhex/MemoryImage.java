@@ -0,0 +1,376 @@
+/*******************************************************************************************************
+ * 	File Name: MemoryImage.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ *	The memory contents described by an Intel HEX file.
+ *	The bytes are kept in contiguous segments sorted by address, each backed by a byte array.
+ *	Writing next to or over a segment joins them, so the segments never touch or overlap
+ *	and finding the segment of an address takes O(log n).
+ * */
+public class MemoryImage implements Iterable<MemoryImage.Segment> {
+
+	// Value of getExecutionStartAddress when the file has no start address record
+	public static final long NO_START_ADDRESS = -1;
+
+	// The segments by their start address
+	private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+
+	// The segment written last, records are usually in increasing address order
+	private Segment lastSegment;
+
+	private long executionStartAddress = NO_START_ADDRESS;
+
+	/*
+	 *	Writes the bytes at the address, replacing any bytes already there.
+	 *	The addresses wrap around at the end of the 32-bit address space, the bytes past
+	 *	it are written from address 0.
+	 *
+	 *	@param address the address of the first byte, from 0 to PagedMemoryImage.ADDRESS_LIMIT - 1
+	 *	@param data the array containing the bytes
+	 *	@param offset the index of the first byte in the array
+	 *	@param length the number of bytes
+	 * */
+	public void write(long address, byte[] data, int offset, int length) {
+		if (address < 0 || address >= PagedMemoryImage.ADDRESS_LIMIT)
+			throw new IllegalArgumentException("address is outside the 32-bit address space: " + address);
+		if (length == 0)
+			return;
+		long end = address + length;
+		
+		if (end > PagedMemoryImage.ADDRESS_LIMIT) {
+			int first = (int) (PagedMemoryImage.ADDRESS_LIMIT - address);
+			this.write(address, data, offset, first);
+			this.write(0, data, offset + first, length - first);
+			return;
+		}
+
+		// Appending to the last segment when it does not reach the next one
+		Segment last = this.lastSegment;
+		if (last != null && last.getEndAddress() == address) {
+			Map.Entry<Long, Segment> next = this.segments.higherEntry(last.startAddress);
+			if (next == null || next.getKey() > end) {
+				last.append(data, offset, length);
+				return;
+			}
+		}
+
+		// Joining every segment touching [address, end] into one
+		long start = address;
+		long newEnd = end;
+		Map.Entry<Long, Segment> floor = this.segments.floorEntry(address);
+		if (floor != null && floor.getValue().getEndAddress() >= address)
+			start = floor.getKey();
+
+		List<Segment> joined = new ArrayList<Segment>(this.segments.subMap(start, true, end, true).values());
+		if (!joined.isEmpty())
+			newEnd = Math.max(end, joined.get(joined.size() - 1).getEndAddress());
+
+		// The first segment is grown in place when it starts at or before the address
+		Segment segment;
+		if (!joined.isEmpty() && joined.get(0).startAddress == start) {
+			segment = joined.remove(0);
+		} else {
+			segment = new Segment(start, new byte[0]);
+			this.segments.put(start, segment);
+		}
+		segment.setLength((int) (newEnd - start));
+
+		for (Segment old : joined) {
+			System.arraycopy(old.data, 0, segment.data, (int) (old.startAddress - start), old.length);
+			this.segments.remove(old.startAddress);
+		}
+		System.arraycopy(data, offset, segment.data, (int) (address - start), length);
+		this.lastSegment = segment;
+	}
+
+	/*
+	 *	Returns the segment containing the address.
+	 *
+	 *	@param address the address to look for
+	 *
+	 *	@return the segment, or null if the address is in a gap
+	 * */
+	public Segment getSegment(long address) {
+		Map.Entry<Long, Segment> floor = this.segments.floorEntry(address);
+		if (floor == null || floor.getValue().getEndAddress() <= address)
+			return null;
+		return floor.getValue();
+	}
+
+	/*
+	 *	Returns the byte at the address.
+	 *
+	 *	@param address the address to read
+	 *
+	 *	@return the unsigned byte, or -1 if the address is in a gap
+	 * */
+	public int getByte(long address) {
+		Segment segment = this.getSegment(address);
+		return segment == null ? -1 : segment.data[(int) (address - segment.startAddress)] & 0xff;
+	}
+
+	/*
+	 *	Copies the bytes of the range, the addresses in gaps are set to the fill value.
+	 *
+	 *	@param address the address of the first byte
+	 *	@param buffer the array the bytes are copied to
+	 *	@param offset the index in the array of the first byte
+	 *	@param length the number of bytes
+	 *	@param fill the value of bytes in gaps, usually 0xFF for an erased flash
+	 *
+	 *	@return the number of bytes which were not in a gap
+	 * */
+	public int read(long address, byte[] buffer, int offset, int length, byte fill) {
+		Arrays.fill(buffer, offset, offset + length, fill);
+
+		long end = address + length;
+		long start = address;
+		Long floor = this.segments.floorKey(address);
+		if (floor != null)
+			start = floor;
+
+		int defined = 0;
+		for (Segment segment : this.segments.subMap(start, true, end, false).values()) {
+			long from = Math.max(address, segment.startAddress);
+			long to = Math.min(end, segment.getEndAddress());
+			if (from >= to)
+				continue;
+			System.arraycopy(segment.data, (int) (from - segment.startAddress), buffer,
+					offset + (int) (from - address), (int) (to - from));
+			defined += (int) (to - from);
+		}
+		return defined;
+	}
+
+	/*
+	 *	Returns the gaps between the segments, from the start of the first segment
+	 *	to the end of the last.
+	 *
+	 *	@return the gaps in increasing address order
+	 * */
+	public List<Gap> getGaps() {
+		List<Gap> toReturn = new ArrayList<Gap>();
+		Segment previous = null;
+		for (Segment segment : this.segments.values()) {
+			if (previous != null)
+				toReturn.add(new Gap(previous.getEndAddress(), segment.startAddress));
+			previous = segment;
+		}
+		return toReturn;
+	}
+
+	/*
+	 *	Returns the segments in increasing address order.
+	 *
+	 *	@return an iterator over the segments
+	 * */
+	@Override
+	public Iterator<Segment> iterator() {
+		return Collections.unmodifiableCollection(this.segments.values()).iterator();
+	}
+
+	/*
+	 *	Returns the number of segments.
+	 *
+	 *	@return the number of segments
+	 * */
+	public int getSegmentCount() {
+		return this.segments.size();
+	}
+
+	/*
+	 *	Returns the number of bytes in all the segments.
+	 *
+	 *	@return the number of bytes
+	 * */
+	public long getSize() {
+		long size = 0;
+		for (Segment segment : this.segments.values()) {
+			size += segment.length;
+		}
+		return size;
+	}
+
+	/*
+	 *	Returns the lowest address having a byte.
+	 *
+	 *	@return the address, or -1 if the image is empty
+	 * */
+	public long getStartAddress() {
+		return this.segments.isEmpty() ? -1 : this.segments.firstKey();
+	}
+
+	/*
+	 *	Returns the address after the highest address having a byte.
+	 *
+	 *	@return the address, or -1 if the image is empty
+	 * */
+	public long getEndAddress() {
+		return this.segments.isEmpty() ? -1 : this.segments.lastEntry().getValue().getEndAddress();
+	}
+
+	/*
+	 *	Returns the value of the start segment address (CS:IP) or start linear address (EIP) record.
+	 *
+	 *	@return the address, or NO_START_ADDRESS
+	 * */
+	public long getExecutionStartAddress() {
+		return this.executionStartAddress;
+	}
+
+	/*
+	 *	Sets the value of the start segment address or start linear address record.
+	 *
+	 *	@param executionStartAddress the address, or NO_START_ADDRESS
+	 * */
+	public void setExecutionStartAddress(long executionStartAddress) {
+		this.executionStartAddress = executionStartAddress;
+	}
+
+	/*
+	 *	A run of bytes at consecutive addresses.
+	 * */
+	public static class Segment {
+		private final long startAddress;
+		private byte[] data;
+		private int length;
+
+		Segment(long startAddress, byte[] data) {
+			this.startAddress = startAddress;
+			this.data = data;
+		}
+
+		private void append(byte[] bytes, int offset, int count) {
+			int index = this.length;
+			this.setLength(this.length + count);
+			System.arraycopy(bytes, offset, this.data, index, count);
+		}
+
+		// Grows the array by doubling so that appending record by record is linear
+		private void setLength(int newLength) {
+			if (newLength > this.data.length)
+				this.data = Arrays.copyOf(this.data, Math.max(newLength, this.data.length * 2));
+			this.length = Math.max(this.length, newLength);
+		}
+
+		/*
+		 *	Returns the address of the first byte.
+		 *
+		 *	@return startAddress
+		 * */
+		public long getStartAddress() {
+			return this.startAddress;
+		}
+
+		/*
+		 *	Returns the address after the last byte.
+		 *
+		 *	@return endAddress
+		 * */
+		public long getEndAddress() {
+			return this.startAddress + this.length;
+		}
+
+		/*
+		 *	Returns the number of bytes.
+		 *
+		 *	@return length
+		 * */
+		public int getLength() {
+			return this.length;
+		}
+
+		/*
+		 *	Copies bytes of the segment to an array.
+		 *
+		 *	@param index the index in the segment of the first byte
+		 *	@param buffer the array the bytes are copied to
+		 *	@param offset the index in the array of the first byte
+		 *	@param count the number of bytes
+		 * */
+		public void read(int index, byte[] buffer, int offset, int count) {
+			if (index < 0 || count < 0 || index > this.length - count)
+				throw new IndexOutOfBoundsException("index " + index + ", count " + count + ", length " + this.length);
+			System.arraycopy(this.data, index, buffer, offset, count);
+		}
+
+		/*
+		 *	Returns a copy of the bytes.
+		 *
+		 *	@return the bytes of the segment
+		 * */
+		public byte[] getData() {
+			return Arrays.copyOf(this.data, this.length);
+		}
+	}
+
+	/*
+	 *	A range of addresses without bytes between two segments.
+	 * */
+	public static class Gap {
+		private final long startAddress;
+		private final long endAddress;
+
+		Gap(long startAddress, long endAddress) {
+			this.startAddress = startAddress;
+			this.endAddress = endAddress;
+		}
+
+		/*
+		 *	Returns the first address of the gap.
+		 *
+		 *	@return startAddress
+		 * */
+		public long getStartAddress() {
+			return this.startAddress;
+		}
+
+		/*
+		 *	Returns the address after the gap, the start of the next segment.
+		 *
+		 *	@return endAddress
+		 * */
+		public long getEndAddress() {
+			return this.endAddress;
+		}
+
+		/*
+		 *	Returns the number of addresses in the gap.
+		 *
+		 *	@return length
+		 * */
+		public long getLength() {
+			return this.endAddress - this.startAddress;
+		}
+	}
+}
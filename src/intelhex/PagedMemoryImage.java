@@ -0,0 +1,317 @@
+/*******************************************************************************************************
+ * 	File Name: PagedMemoryImage.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.nio.ByteBuffer;
+
+/*
+ *	The memory contents described by an Intel HEX file, for images spread over the whole
+ *	32-bit address space. The memory is split in pages of PAGE_SIZE bytes which are only
+ *	allocated when a byte is written to them. The pages are off-heap, cut from direct
+ *	buffers of SLAB_SIZE bytes, and are found through a two level table in O(1).
+ *
+ *	Each page is followed by a bitmap of the bytes which were written, so the bytes of
+ *	a page which are not in the file can be told apart from written ones.
+ *	This class is not thread safe.
+ * */
+public class PagedMemoryImage {
+
+	// Number of bytes in a page
+	public static final int PAGE_SIZE = 4096;
+
+	// The addresses are from 0 to ADDRESS_LIMIT - 1
+	public static final long ADDRESS_LIMIT = 1L << 32;
+
+	// Value of getExecutionStartAddress when the file has no start address record
+	public static final long NO_START_ADDRESS = -1;
+
+	private static final int PAGE_SHIFT = 12;
+	private static final int TABLE_SHIFT = 10;
+	private static final int TABLE_MASK = (1 << TABLE_SHIFT) - 1;
+
+	// A page is its bytes followed by one bit per byte
+	private static final int BITMAP_SIZE = PAGE_SIZE / 8;
+	private static final int PAGE_BYTES = PAGE_SIZE + BITMAP_SIZE;
+
+	// The direct buffers the pages are cut from
+	private static final int SLAB_SIZE = 256 * PAGE_BYTES;
+
+	// directory[page >>> TABLE_SHIFT][page & TABLE_MASK], page = address >>> PAGE_SHIFT
+	private final ByteBuffer[][] directory = new ByteBuffer[1 << (32 - PAGE_SHIFT - TABLE_SHIFT)][];
+
+	// The slab the next page is cut from
+	private ByteBuffer slab;
+
+	private int pageCount;
+	private long size;
+
+	private long executionStartAddress = NO_START_ADDRESS;
+
+	/*
+	 *	Writes the bytes at the address, replacing any bytes already there.
+	 *	The addresses wrap around at the end of the 32-bit address space, the bytes past
+	 *	it are written from address 0.
+	 *
+	 *	@param address the address of the first byte, from 0 to ADDRESS_LIMIT - 1
+	 *	@param data the array containing the bytes
+	 *	@param offset the index of the first byte in the array
+	 *	@param length the number of bytes
+	 * */
+	public void write(long address, byte[] data, int offset, int length) {
+		if (address >= 0 && address < ADDRESS_LIMIT && address + length > ADDRESS_LIMIT) {
+			int first = (int) (ADDRESS_LIMIT - address);
+			this.write(address, data, offset, first);
+			this.write(0, data, offset + first, length - first);
+			return;
+		}
+		PagedMemoryImage.checkRange(address, length);
+
+		while (length > 0) {
+			ByteBuffer page = this.getPage(address, true);
+			int index = (int) (address & (PAGE_SIZE - 1));
+			int n = Math.min(length, PAGE_SIZE - index);
+
+			page.position(index);
+			page.put(data, offset, n);
+			this.size += PagedMemoryImage.markDefined(page, index, n);
+
+			address += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/*
+	 *	Returns the byte at the address.
+	 *
+	 *	@param address the address to read
+	 *
+	 *	@return the unsigned byte, or -1 if it was not written
+	 * */
+	public int getByte(long address) {
+		PagedMemoryImage.checkRange(address, 1);
+
+		ByteBuffer page = this.getPage(address, false);
+		int index = (int) (address & (PAGE_SIZE - 1));
+		if (page == null || !PagedMemoryImage.isDefined(page, index))
+			return -1;
+		return page.get(index) & 0xff;
+	}
+
+	/*
+	 *	Copies the bytes of the range, the bytes not written are set to the fill value.
+	 *
+	 *	@param address the address of the first byte
+	 *	@param buffer the array the bytes are copied to
+	 *	@param offset the index in the array of the first byte
+	 *	@param length the number of bytes
+	 *	@param fill the value of bytes not written, usually 0xFF for an erased flash
+	 *
+	 *	@return the number of bytes which were written
+	 * */
+	public int read(long address, byte[] buffer, int offset, int length, byte fill) {
+		PagedMemoryImage.checkRange(address, length);
+
+		int defined = 0;
+		while (length > 0) {
+			ByteBuffer page = this.getPage(address, false);
+			int index = (int) (address & (PAGE_SIZE - 1));
+			int n = Math.min(length, PAGE_SIZE - index);
+
+			if (page == null) {
+				for (int i = 0; i < n; i++) {
+					buffer[offset + i] = fill;
+				}
+			} else {
+				page.position(index);
+				page.get(buffer, offset, n);
+				for (int i = 0; i < n; i++) {
+					if (PagedMemoryImage.isDefined(page, index + i))
+						defined++;
+					else
+						buffer[offset + i] = fill;
+				}
+			}
+
+			address += n;
+			offset += n;
+			length -= n;
+		}
+		return defined;
+	}
+
+	/*
+	 *	Finds the first written address at or after the address.
+	 *
+	 *	@param address the address to start from
+	 *
+	 *	@return the address, or -1 if no byte is written from there on
+	 * */
+	public long nextDefinedAddress(long address) {
+		return this.find(address, true);
+	}
+
+	/*
+	 *	Finds the first address at or after the address which was not written,
+	 *	the end of a run of written bytes.
+	 *
+	 *	@param address the address to start from
+	 *
+	 *	@return the address, ADDRESS_LIMIT if every byte up to the end is written
+	 * */
+	public long nextGapAddress(long address) {
+		long toReturn = this.find(address, false);
+		return toReturn < 0 ? ADDRESS_LIMIT : toReturn;
+	}
+
+	private long find(long address, boolean defined) {
+		while (address >= 0 && address < ADDRESS_LIMIT) {
+			int pageNumber = (int) (address >>> PAGE_SHIFT);
+			ByteBuffer[] table = this.directory[pageNumber >>> TABLE_SHIFT];
+
+			// A missing table or page is not written at all
+			if (table == null || table[pageNumber & TABLE_MASK] == null) {
+				if (!defined)
+					return address;
+				long step = table == null ? (long) PAGE_SIZE << TABLE_SHIFT : PAGE_SIZE;
+				address = (address & -step) + step;
+				continue;
+			}
+
+			ByteBuffer page = table[pageNumber & TABLE_MASK];
+			for (int index = (int) (address & (PAGE_SIZE - 1)); index < PAGE_SIZE; index++) {
+				// Skipping bitmap bytes which are all set or all clear
+				if ((index & 7) == 0) {
+					int bits = page.get(PAGE_SIZE + (index >>> 3)) & 0xff;
+					if (bits == (defined ? 0 : 0xff)) {
+						index += 7;
+						continue;
+					}
+				}
+				if (PagedMemoryImage.isDefined(page, index) == defined)
+					return (address & -PAGE_SIZE) + index;
+			}
+			address = (address & -PAGE_SIZE) + PAGE_SIZE;
+		}
+		return -1;
+	}
+
+	/*
+	 *	Returns the number of bytes written, each address counted once.
+	 *
+	 *	@return size
+	 * */
+	public long getSize() {
+		return this.size;
+	}
+
+	/*
+	 *	Returns the number of pages allocated.
+	 *
+	 *	@return pageCount
+	 * */
+	public int getPageCount() {
+		return this.pageCount;
+	}
+
+	/*
+	 *	Returns the value of the start segment address (CS:IP) or start linear address (EIP) record.
+	 *
+	 *	@return the address, or NO_START_ADDRESS
+	 * */
+	public long getExecutionStartAddress() {
+		return this.executionStartAddress;
+	}
+
+	/*
+	 *	Sets the value of the start segment address or start linear address record.
+	 *
+	 *	@param executionStartAddress the address, or NO_START_ADDRESS
+	 * */
+	public void setExecutionStartAddress(long executionStartAddress) {
+		this.executionStartAddress = executionStartAddress;
+	}
+
+	/*
+	 *	Returns the page of the address, allocating it if asked to.
+	 *
+	 *	@return the page, or null if it is not allocated and allocate is false
+	 * */
+	private ByteBuffer getPage(long address, boolean allocate) {
+		int pageNumber = (int) (address >>> PAGE_SHIFT);
+		ByteBuffer[] table = this.directory[pageNumber >>> TABLE_SHIFT];
+		if (table == null) {
+			if (!allocate)
+				return null;
+			table = new ByteBuffer[1 << TABLE_SHIFT];
+			this.directory[pageNumber >>> TABLE_SHIFT] = table;
+		}
+
+		ByteBuffer page = table[pageNumber & TABLE_MASK];
+		if (page == null && allocate) {
+			if (this.slab == null || !this.slab.hasRemaining())
+				this.slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+			this.slab.limit(this.slab.position() + PAGE_BYTES);
+			page = this.slab.slice();
+			this.slab.position(this.slab.limit());
+			this.slab.limit(this.slab.capacity());
+
+			table[pageNumber & TABLE_MASK] = page;
+			this.pageCount++;
+		}
+		return page;
+	}
+
+	private static boolean isDefined(ByteBuffer page, int index) {
+		return (page.get(PAGE_SIZE + (index >>> 3)) & (1 << (index & 7))) != 0;
+	}
+
+	/*
+	 *	Sets the bits of the bytes [index, index + count) of the page.
+	 *
+	 *	@return the number of bits which were not set before
+	 * */
+	private static int markDefined(ByteBuffer page, int index, int count) {
+		int added = 0;
+		int end = index + count;
+
+		while (index < end) {
+			int bitmapIndex = PAGE_SIZE + (index >>> 3);
+			int from = index & 7;
+			int to = Math.min(8, from + end - index);
+			int mask = (0xff >>> (8 - (to - from))) << from;
+
+			int bits = page.get(bitmapIndex) & 0xff;
+			added += Integer.bitCount(mask & ~bits);
+			page.put(bitmapIndex, (byte) (bits | mask));
+			index += to - from;
+		}
+		return added;
+	}
+
+	private static void checkRange(long address, int length) {
+		if (address < 0 || length < 0 || address + length > ADDRESS_LIMIT)
+			throw new IllegalArgumentException("Range " + address + " + " + length + " is outside the 32-bit address space");
+	}
+}
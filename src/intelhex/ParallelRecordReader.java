@@ -0,0 +1,252 @@
+/*******************************************************************************************************
+ * 	File Name: ParallelRecordReader.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.CheckSumFailException;
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ *	Reads the records of a file on a ForkJoinPool.
+ *	The file is split in chunks at line boundaries, every chunk is mapped and decoded
+ *	by its own task and the records are put together again in file order.
+ *	Every chunk resolves its addresses from a base of 0, the records up to the first
+ *	extended address record of a chunk are then moved by the base the chunks before it left.
+ * */
+final class ParallelRecordReader {
+
+	// Chunks are not made smaller than this, the task overhead would be larger than the work.
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+	// Number of chunks per worker thread, so that uneven chunks still keep all threads busy.
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final FileChannel channel;
+	private final long chunkSize;
+
+	// Chunk i is the file from boundaries[i] to boundaries[i + 1]
+	private final long[] boundaries;
+
+	// Filled by the tasks, the records or the first error of each chunk
+	private final IntelHexRecord[][] records;
+	private final Exception[] errors;
+
+	// The base address each chunk leaves, or -1 if it has no extended address record
+	private final long[] bases;
+
+	// Number of records at the start of each chunk which depend on the base of the chunks before,
+	// up to and including its first extended address record
+	private final int[] unresolvedCounts;
+
+	private ParallelRecordReader(FileChannel channel, long chunkSize, long[] boundaries) {
+		this.channel = channel;
+		this.chunkSize = chunkSize;
+		this.boundaries = boundaries;
+		this.records = new IntelHexRecord[boundaries.length - 1][];
+		this.errors = new Exception[boundaries.length - 1];
+		this.bases = new long[boundaries.length - 1];
+		this.unresolvedCounts = new int[boundaries.length - 1];
+	}
+
+	/*
+	 *	Reads all the records of the file.
+	 *
+	 *	@param channel the channel of the file, only used with positional reads
+	 *	@param pool the pool the chunks are decoded on
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException the first incorrect record of the file
+	 *
+	 *	@return the records in file order
+	 * */
+	static IntelHexRecord[] read(FileChannel channel, ForkJoinPool pool) 
+			throws IOException, CheckSumFailException, IncorrectRecordException {
+		long size = channel.size();
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD));
+		chunkSize = Math.min(chunkSize, RecordCursor.MAPPED_WINDOW_SIZE); // a chunk is mapped at once
+		
+		ArrayList<Long> boundaries = new ArrayList<Long>();
+		boundaries.add(0L);
+		for (long position = 0; position < size; ) {
+			position = ParallelRecordReader.nextLineStart(channel, Math.min(position + chunkSize, size), size);
+			boundaries.add(position);
+		}
+		
+		long[] chunks = new long[boundaries.size()];
+		for (int i = 0; i < chunks.length; i++) {
+			chunks[i] = boundaries.get(i);
+		}
+		
+		ParallelRecordReader reader = new ParallelRecordReader(channel, chunkSize, chunks);
+		pool.invoke(reader.new ChunkTask(0, chunks.length - 1));
+		return reader.collect();
+	}
+
+	/*
+	 *	Finds the start of the first line after the position, the chunks are split there.
+	 *
+	 *	@return the index after the line terminator, or size if there is none
+	 * */
+	private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		
+		while (position < size) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if (n < 0)
+				break;
+			
+			for (int i = 0; i < n; i++) {
+				byte b = buffer.get(i);
+				if (b == '\n')
+					return position + i + 1;
+				if (b == '\r') {
+					// a "\r\n" is kept in one chunk
+					if (i + 1 < n)
+						return position + i + (buffer.get(i + 1) == '\n' ? 2 : 1);
+					return ParallelRecordReader.skipNewLine(channel, position + i + 1, size);
+				}
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	private static long skipNewLine(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer one = ByteBuffer.allocate(1);
+		if (position < size && channel.read(one, position) == 1 && one.get(0) == '\n')
+			return position + 1;
+		return position;
+	}
+
+	/*
+	 *	Decodes every line of the chunk and stores the records or the first error.
+	 * */
+	private void readChunk(int chunk) {
+		try {
+			// A chunk is longer than chunkSize only by the rest of its last line. The mapping stops
+			// past the longest line accepted, so a line too long to map is rejected by the scanner.
+			long start = this.boundaries[chunk];
+			long length = Math.min(this.boundaries[chunk + 1] - start,
+					this.chunkSize + IntelHexReader.DEFAULT_BUFFER_SIZE + 2);
+			ByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			
+			ArrayList<IntelHexRecord> chunkRecords = new ArrayList<IntelHexRecord>();
+			RecordDecoder decoder = new RecordDecoder();
+			LineScanner lines = new LineScanner(buffer);
+			long base = 0;
+			int unresolvedCount = -1;
+			while (lines.nextLine()) {
+				int status = decoder.decode(buffer, lines.lineStart, lines.lineEnd);
+				if (status != RecordDecoder.OK)
+					decoder.throwException(status);
+				
+				chunkRecords.add(new IntelHexRecord(decoder, base + decoder.address()));
+				if (unresolvedCount < 0 && ParallelRecordReader.isExtendedAddress(decoder))
+					unresolvedCount = chunkRecords.size();
+				base = decoder.nextBase(base);
+			}
+			this.records[chunk] = chunkRecords.toArray(new IntelHexRecord[chunkRecords.size()]);
+			this.unresolvedCounts[chunk] = unresolvedCount < 0 ? chunkRecords.size() : unresolvedCount;
+			this.bases[chunk] = unresolvedCount < 0 ? -1 : base;
+		} catch (Exception e) {
+			this.errors[chunk] = e;
+		}
+	}
+
+	private static boolean isExtendedAddress(RecordDecoder decoder) {
+		return decoder.recordType == IntelHexRecord.RECORD_EXTENDED_SEGMENT_ADDRESS
+				|| decoder.recordType == IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS;
+	}
+
+	/*
+	 *	Puts the records of the chunks together, or throws the error of the first failed chunk.
+	 * */
+	private IntelHexRecord[] collect() throws IOException, CheckSumFailException, IncorrectRecordException {
+		int count = 0;
+		for (int i = 0; i < this.records.length; i++) {
+			Exception e = this.errors[i];
+			if (e instanceof IOException)
+				throw (IOException) e;
+			if (e instanceof CheckSumFailException)
+				throw (CheckSumFailException) e;
+			if (e instanceof IncorrectRecordException)
+				throw (IncorrectRecordException) e;
+			if (e != null)
+				throw new IllegalStateException(e);
+			count += this.records[i].length;
+		}
+		
+		// Moving the records up to the first base change by the base of the chunks before
+		long base = 0;
+		for (int i = 0; i < this.records.length; i++) {
+			if (base != 0) {
+				for (int j = 0; j < this.unresolvedCounts[i]; j++) {
+					this.records[i][j].resolveAddress(base);
+				}
+			}
+			if (this.bases[i] >= 0)
+				base = this.bases[i];
+		}
+		
+		IntelHexRecord[] toReturn = new IntelHexRecord[count];
+		for (int i = 0, n = 0; i < this.records.length; i++) {
+			System.arraycopy(this.records[i], 0, toReturn, n, this.records[i].length);
+			n += this.records[i].length;
+		}
+		return toReturn;
+	}
+
+	/*
+	 *	Decodes the chunks [from, to), splitting the range in half until a single chunk is left.
+	 * */
+	private final class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		ChunkTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from == 1) {
+				ParallelRecordReader.this.readChunk(this.from);
+			} else if (this.to > this.from) {
+				int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(new ChunkTask(this.from, middle), new ChunkTask(middle, this.to));
+			}
+		}
+	}
+}
@@ -0,0 +1,349 @@
+/*******************************************************************************************************
+ * 	File Name: RecordCursor.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.CheckSumFailException;
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+ *	Walks the records of an Intel HEX file, mapped into memory, or of a buffer holding its text.
+ *	The cursor is itself the current record: next() decodes the following line into reused
+ *	fields and the getters return them, so going through any number of records allocates nothing.
+ *	The extended address records are applied as the records are read.
+ *
+ *	The data bytes are copied with getData, or read in place through getDataBuffer.
+ * */
+public class RecordCursor implements RecordView, Closeable {
+
+	// The largest region of a file mapped at once
+	static final int MAPPED_WINDOW_SIZE = 1 << 30;
+
+	private final RecordDecoder decoder = new RecordDecoder();
+
+	// A read only buffer over the decoded data bytes
+	private final ByteBuffer dataBuffer = ByteBuffer.wrap(this.decoder.data).asReadOnlyBuffer();
+
+	// The file mapped window by window, null for a buffer
+	private final FileChannel channel;
+	private long position;
+
+	private LineScanner lines;
+	private long lineNumber;
+
+	// true while the rest of a line filling a whole window, already rejected, is read past
+	private boolean skipping;
+
+	private long base;
+	private long absoluteAddress;
+
+	// true while the cursor is on a correct record
+	private boolean onRecord;
+
+	/*
+	 *	Opens the file and maps it for reading.
+	 *
+	 *	@param filePathName the complete path to file including its name and extension
+	 *
+	 *	@throws IOException
+	 * */
+	public RecordCursor(String filePathName) throws IOException {
+		this.channel = FileChannel.open(Paths.get(filePathName), StandardOpenOption.READ);
+		try {
+			this.mapWindow();
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/*
+	 *	Walks the records between the position and limit of the buffer, which is not modified.
+	 *
+	 *	@param buffer the ASCII text of an Intel HEX file
+	 * */
+	public RecordCursor(ByteBuffer buffer) {
+		this.channel = null;
+		this.lines = new LineScanner(buffer);
+	}
+
+	/*
+	 *	Maps the window of the file starting at position.
+	 * */
+	private void mapWindow() throws IOException {
+		long size = this.channel.size();
+		long windowSize = Math.min(size - this.position, MAPPED_WINDOW_SIZE);
+		this.lines = new LineScanner(this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, windowSize),
+				this.position + windowSize == size);
+	}
+
+	/*
+	 *	Moves to the next record.
+	 *
+	 *	@throws IOException
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException if the record is incorrect, the cursor continues
+	 *	with the next line when called again.
+	 *
+	 *	@return false at the end of the input
+	 * */
+	public boolean next() throws IOException, CheckSumFailException, IncorrectRecordException {
+		this.onRecord = false;
+		if (!this.nextLine())
+			return false;
+
+		int status = this.decoder.decode(this.lines.buffer, this.lines.lineStart, this.lines.lineEnd);
+		if (status != RecordDecoder.OK)
+			this.decoder.throwException(status);
+
+		this.absoluteAddress = (this.base + this.decoder.address()) & 0xFFFFFFFFL;
+		this.base = this.decoder.nextBase(this.base);
+		this.onRecord = true;
+		return true;
+	}
+
+	/*
+	 *	Moves the scanner to the next line, the next window of the file is mapped when the
+	 *	current one ends with an incomplete line.
+	 *
+	 *	@throws IOException
+	 *	@throws IncorrectRecordException if the line is too long, the next call continues
+	 *	with the line after it
+	 *
+	 *	@return false at the end of the input
+	 * */
+	private boolean nextLine() throws IOException, IncorrectRecordException {
+		for (;;) {
+			boolean found;
+			try {
+				found = this.lines.nextLine();
+			} catch (IncorrectRecordException e) {
+				if (this.skipping) { // the rest of the line already rejected
+					this.skipping = false;
+					continue;
+				}
+				this.lineNumber++;
+				throw e;
+			}
+			if (found) {
+				if (!this.skipping) {
+					this.lineNumber++;
+					return true;
+				}
+				this.skipping = false;
+				continue;
+			}
+			if (this.channel == null || this.position + this.lines.buffer.limit() == this.channel.size())
+				return false;
+
+			// The window ended, the next one starts at the line left incomplete. A line filling
+			// the whole window is rejected and the next windows are read past its end.
+			int consumed = this.lines.buffer.position();
+			this.position += consumed == 0 ? this.lines.buffer.limit() : consumed;
+			this.mapWindow();
+			if (consumed == 0 && !this.skipping) {
+				this.skipping = true;
+				this.lineNumber++;
+				throw new IncorrectRecordException(this.lines.lineTooLongMessage());
+			}
+		}
+	}
+
+	/*
+	 *	Returns the number of lines consumed so far, which is the line number
+	 *	of the current record or of the last one rejected.
+	 *
+	 *	@return lineNumber
+	 * */
+	public long getLineNumber() {
+		return this.lineNumber;
+	}
+
+	/*
+	 *	Makes an IntelHexRecord of the current record, with its absolute address.
+	 *
+	 *	@return the record
+	 * */
+	IntelHexRecord toRecord() {
+		this.checkOnRecord();
+		return new IntelHexRecord(this.decoder, this.absoluteAddress);
+	}
+
+	/*
+	 *	Closes the file. The mapped windows are released when they are no longer referenced.
+	 *
+	 *	@throws IOException
+	 * */
+	@Override
+	public void close() throws IOException {
+		if (this.channel != null)
+			this.channel.close();
+	}
+
+	private void checkOnRecord() {
+		if (!this.onRecord)
+			throw new IllegalStateException("The cursor is not on a record");
+	}
+
+	/////////////////////////////// GETTER METHODS ////////////////////////////////
+	/*
+	 *	Returns the number of data bytes of the current record.
+	 *
+	 *	@return byteCount
+	 * */
+	@Override
+	public byte getByteCount() {
+		this.checkOnRecord();
+		return (byte) this.decoder.byteCount;
+	}
+
+	/*
+	 *	Returns the 8 MSBits of 16-bit address.
+	 *
+	 *	@return addrH
+	 * */
+	@Override
+	public byte getAddrH() {
+		this.checkOnRecord();
+		return (byte) this.decoder.addrH;
+	}
+
+	/*
+	 *	Returns the 8 LSBits of 16-bit address.
+	 *
+	 *	@return addrL
+	 * */
+	@Override
+	public byte getAddrL() {
+		this.checkOnRecord();
+		return (byte) this.decoder.addrL;
+	}
+
+	/*
+	 *	Returns the 16-bit address made of addrH and addrL.
+	 *
+	 *	@return address
+	 * */
+	@Override
+	public int getAddress() {
+		this.checkOnRecord();
+		return this.decoder.address();
+	}
+
+	/*
+	 *	Returns the 32-bit address of the current record, including the base set by the
+	 *	extended address records before it in the file.
+	 *
+	 *	@return absoluteAddress
+	 * */
+	@Override
+	public long getAbsoluteAddress() {
+		this.checkOnRecord();
+		return this.absoluteAddress;
+	}
+
+	/*
+	 *	Returns the record type.
+	 *
+	 *	@return recordType
+	 * */
+	@Override
+	public byte getRecordType() {
+		this.checkOnRecord();
+		return (byte) this.decoder.recordType;
+	}
+
+	/*
+	 *	Returns the Check Sum.
+	 *
+	 *	@return checkSum
+	 * */
+	@Override
+	public byte getCheckSum() {
+		this.checkOnRecord();
+		return (byte) this.decoder.checkSum;
+	}
+
+	/*
+	 *	Returns a copy of the data bytes in an array, getDataBuffer reads them in place.
+	 *
+	 *	@return dataSequence
+	 * */
+	@Override
+	public byte[] getDataSequence() {
+		this.checkOnRecord();
+		return Arrays.copyOf(this.decoder.data, this.decoder.byteCount);
+	}
+
+	/*
+	 *	Copies the data bytes to the array, without allocating.
+	 *
+	 *	@param dest the array the data bytes are copied to
+	 *	@param offset the index in dest of the first data byte
+	 *
+	 *	@return the number of data bytes copied
+	 * */
+	@Override
+	public int getData(byte[] dest, int offset) {
+		this.checkOnRecord();
+		System.arraycopy(this.decoder.data, 0, dest, offset, this.decoder.byteCount);
+		return this.decoder.byteCount;
+	}
+
+	/*
+	 *	Returns a read only buffer over the data bytes of the current record, from position 0
+	 *	to the byte count. The same buffer is returned for every record and its contents
+	 *	change with next().
+	 *
+	 *	@return the data bytes
+	 * */
+	public ByteBuffer getDataBuffer() {
+		this.checkOnRecord();
+		this.dataBuffer.limit(this.decoder.byteCount).position(0);
+		return this.dataBuffer;
+	}
+
+	/*
+	 *	Returns the record formatted string, built from the fields in upper case hex.
+	 *
+	 *	@return record
+	 * */
+	@Override
+	public String getRecord() {
+		this.checkOnRecord();
+		byte[] out = new byte[11 + 2 * this.decoder.byteCount];
+
+		IntelHexRecord.encode(out, 0, this.decoder.recordType, this.decoder.address(),
+				this.decoder.data, 0, this.decoder.byteCount);
+		return new String(out, StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,422 @@
+/*******************************************************************************************************
+ * 	File Name: RecordDecoder.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.CheckSumFailException;
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ *	Decodes the fields of one record at a time into reused fields and a reused data array,
+ *	so decoding a correct record allocates nothing. Errors are returned as a status
+ *	and only turned into an exception when asked for.
+ *	The record is read either from ASCII bytes in a ByteBuffer or from the chars of a String.
+ * */
+final class RecordDecoder {
+
+	// The status returned by decode
+	static final int OK 					= 0;
+	static final int MISSING_COLON 			= 1;
+	static final int INCORRECT_CHARACTER 	= 2;
+	static final int RECORD_TOO_SHORT 		= 3;
+	static final int CHECKSUM_MISMATCH 		= 4;
+	static final int INCORRECT_RECORD_TYPE 	= 5;
+
+	// The fields of the last decoded record, unsigned.
+	int byteCount;
+	int addrH;
+	int addrL;
+	int recordType;
+	int checkSum;
+
+	// The data bytes are data[0, byteCount), the array is replaced by a larger one when
+	// a record has more data bytes than it holds
+	byte[] data;
+
+	// The checksum calculated from the fields, set when the status is CHECKSUM_MISMATCH
+	int calculatedCheckSum;
+
+	// The index from the colon where the record went wrong, set for every status other than OK:
+	// the colon, the incorrect character, the end of a short record, the check sum, or the byte
+	// count or record type which do not go together.
+	int errorIndex;
+
+	// The incorrect character, set when the status is INCORRECT_CHARACTER
+	char errorCharacter;
+
+	// The record being decoded, one of the two is set
+	private ByteBuffer bytes;
+	private CharSequence chars;
+
+	// false to decode the data of a ByteBuffer one pair of characters at a time like a String,
+	// so the benchmarks can measure the word at a time decoding on the same input
+	boolean wordDecoding = true;
+
+	/*
+	 *	Makes a decoder for any number of records, the data array holds the longest record
+	 *	and is never replaced.
+	 * */
+	RecordDecoder() {
+		this(255);
+	}
+
+	/*
+	 *	Makes a decoder with a data array of the given size.
+	 *
+	 *	@param capacity the number of data bytes the data array holds, a decoder made for
+	 *	a single record passes 0 so the array is made with the size of its data
+	 * */
+	RecordDecoder(int capacity) {
+		this.data = new byte[capacity];
+	}
+
+	/*
+	 *	Decodes the record buffer[start, end) without a line terminator.
+	 *	The buffer is read with absolute gets.
+	 *
+	 *	@param record buffer containing the ASCII bytes of a single record
+	 *	@param start the index of the colon ':' in the buffer
+	 *	@param end the index after the last byte of the record
+	 *
+	 *	@return OK or the reason the record is incorrect
+	 * */
+	int decode(ByteBuffer record, int start, int end) {
+		this.bytes = record;
+		this.chars = null;
+		return this.decode(start, end, true);
+	}
+
+	/*
+	 *	Checks the record buffer[start, end) without a line terminator, same as decode, but
+	 *	the check sum is calculated straight from the hex characters and the data bytes are
+	 *	not stored, so the contents of data are undefined afterwards.
+	 *
+	 *	@param record buffer containing the ASCII bytes of a single record
+	 *	@param start the index of the colon ':' in the buffer
+	 *	@param end the index after the last byte of the record
+	 *
+	 *	@return OK or the reason the record is incorrect
+	 * */
+	int check(ByteBuffer record, int start, int end) {
+		this.bytes = record;
+		this.chars = null;
+		return this.decode(start, end, false);
+	}
+
+	/*
+	 *	Decodes the record chars[start, end) without a line terminator.
+	 *
+	 *	@param record the chars of a single record
+	 *	@param start the index of the colon ':'
+	 *	@param end the index after the last char of the record
+	 *
+	 *	@return OK or the reason the record is incorrect
+	 * */
+	int decode(CharSequence record, int start, int end) {
+		this.bytes = null;
+		this.chars = record;
+		return this.decode(start, end, true);
+	}
+
+	private int decode(int start, int end, boolean storeData) {
+		int i = start; // index of the current record byte
+		int value;
+
+		// The first character of a record should be a ':'
+		if (i == end || this.charAt(i++) != ':') {
+			this.errorIndex = 0;
+			return MISSING_COLON;
+		}
+
+		if ((value = this.decodeByteAt(i, start, end)) < 0)
+			return -value;
+		this.byteCount = value;
+		if (this.data.length < value)
+			this.data = new byte[value];
+		i += 2;
+
+		if ((value = this.decodeByteAt(i, start, end)) < 0)
+			return -value;
+		this.addrH = value;
+		i += 2;
+
+		if ((value = this.decodeByteAt(i, start, end)) < 0)
+			return -value;
+		this.addrL = value;
+		i += 2;
+
+		if ((value = this.decodeByteAt(i, start, end)) < 0)
+			return -value;
+		this.recordType = value;
+		i += 2;
+
+		int sum = this.byteCount + this.addrH + this.addrL + this.recordType;
+		int j = 0;
+
+		// Four data bytes at a time from the eight characters of a long, any characters which
+		// are not hex are left to the loop after to be reported
+		if (this.bytes != null && this.wordDecoding) {
+			boolean littleEndian = this.bytes.order() == ByteOrder.LITTLE_ENDIAN;
+			for (int last = Math.min(this.byteCount - 4, (end - 8 - i) >> 1); j <= last; i += 8, j += 4) {
+				long word = this.bytes.getLong(i);
+				if (littleEndian)
+					word = Long.reverseBytes(word);
+
+				if (!storeData) {
+					int sum4 = HexCodec.sumWord(word);
+					if (sum4 < 0)
+						break;
+					sum += sum4;
+					continue;
+				}
+
+				long value4 = HexCodec.decodeWord(word);
+				if (value4 < 0)
+					break;
+
+				int b0 = (int) (value4 >>> 24);
+				int b1 = (int) (value4 >>> 16) & 0xff;
+				int b2 = (int) (value4 >>> 8) & 0xff;
+				int b3 = (int) value4 & 0xff;
+				this.data[j] = (byte) b0;
+				this.data[j + 1] = (byte) b1;
+				this.data[j + 2] = (byte) b2;
+				this.data[j + 3] = (byte) b3;
+				sum += b0 + b1 + b2 + b3;
+			}
+		}
+
+		for (; j < this.byteCount; i += 2, j++) {
+			if ((value = this.decodeByteAt(i, start, end)) < 0)
+				return -value;
+			this.data[j] = (byte) value;
+			sum += value;
+		}
+
+		if ((value = this.decodeByteAt(i, start, end)) < 0)
+			return -value;
+		this.checkSum = value;
+		int checkSumIndex = i - start;
+		i += 2;
+
+		// Anything after the check sum is ignored but still has to be hex
+		for (; i < end; i++) {
+			int ch = this.charAt(i);
+			if (HexCodec.nibble(ch) == HexCodec.INVALID)
+				return this.incorrectCharacter(ch, i - start);
+		}
+
+		this.calculatedCheckSum = -sum & 0xff;
+		if (this.calculatedCheckSum != this.checkSum) {
+			this.errorIndex = checkSumIndex;
+			return CHECKSUM_MISMATCH;
+		}
+		return this.checkRecordType();
+	}
+
+	/*
+	 *	Checks the record type and the byte count of a record which is otherwise correct.
+	 *	The extended address records have 2 data bytes, the start address records 4 and
+	 *	the types after RECORD_START_LINEAR_ADDRESS are unknown. Every reader of records
+	 *	goes through this check, so a file is correct or not whichever way it is read.
+	 *
+	 *	@return OK or INCORRECT_RECORD_TYPE
+	 * */
+	private int checkRecordType() {
+		int expectedByteCount;
+		switch (this.recordType) {
+		case IntelHexRecord.RECORD_DATA:
+		case IntelHexRecord.RECORD_END_OF_FILE:
+			return OK;
+		case IntelHexRecord.RECORD_EXTENDED_SEGMENT_ADDRESS:
+		case IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS:
+			expectedByteCount = 2;
+			break;
+		case IntelHexRecord.RECORD_START_SEGMENT_ADDRESS:
+		case IntelHexRecord.RECORD_START_LINEAR_ADDRESS:
+			expectedByteCount = 4;
+			break;
+		default:
+			this.errorIndex = 7;
+			return INCORRECT_RECORD_TYPE;
+		}
+
+		if (this.byteCount == expectedByteCount)
+			return OK;
+		this.errorIndex = 1;
+		return INCORRECT_RECORD_TYPE;
+	}
+
+	/*
+	 *	Decodes the hex pair starting at index of the buffer.
+	 *
+	 *	@return the value 0 - 255, or the negative status if the record ends or has an incorrect character
+	 * */
+	private int decodeByteAt(int index, int start, int end) {
+		if (index + 1 >= end) {
+			this.errorIndex = end - start;
+			return -RECORD_TOO_SHORT;
+		}
+
+		int ch1 = this.charAt(index);
+		int ch2 = this.charAt(index + 1);
+		int value = HexCodec.decodePair(ch1, ch2);
+
+		if (value == HexCodec.INVALID) {
+			if (HexCodec.nibble(ch1) == HexCodec.INVALID)
+				return -this.incorrectCharacter(ch1, index - start);
+			return -this.incorrectCharacter(ch2, index + 1 - start);
+		}
+		return value;
+	}
+
+	private int charAt(int index) {
+		return this.bytes != null ? this.bytes.get(index) & 0xff : this.chars.charAt(index);
+	}
+
+	private int incorrectCharacter(int ch, int index) {
+		this.errorCharacter = (char) ch;
+		this.errorIndex = index;
+		return INCORRECT_CHARACTER;
+	}
+
+	/*
+	 *	Returns the 16-bit address of the last decoded record.
+	 *
+	 *	@return the address
+	 * */
+	int address() {
+		return (this.addrH << 8) | this.addrL;
+	}
+
+	/*
+	 *	Returns the big endian value of the data bytes of the last decoded record,
+	 *	as used by the address records.
+	 *
+	 *	@return the value of the data field
+	 * */
+	long dataValue() {
+		long value = 0;
+		for (int j = 0; j < this.byteCount; j++) {
+			value = (value << 8) | (this.data[j] & 0xff);
+		}
+		return value;
+	}
+
+	/*
+	 *	Returns the base address in effect after the last record decoded without error.
+	 *	The base is changed by the extended segment address (segment * 16) and the extended
+	 *	linear address (upper 16 bits) records, decode has checked they have 2 data bytes.
+	 *
+	 *	@param base the base address in effect before the record, 0 at the start of a file
+	 *
+	 *	@return the base address after the record
+	 * */
+	long nextBase(long base) {
+		if (this.recordType == IntelHexRecord.RECORD_EXTENDED_SEGMENT_ADDRESS)
+			return this.dataValue() << 4;
+		if (this.recordType == IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS)
+			return this.dataValue() << 16;
+		return base;
+	}
+
+	/*
+	 *	Describes the status, with the same text as the message of the exception.
+	 *
+	 *	@param status a status other than OK returned by the last decode
+	 *
+	 *	@return the description of the error
+	 * */
+	String message(int status) {
+		switch (status) {
+		case MISSING_COLON:
+			return "Record should start with a colon \":\"";
+		case INCORRECT_CHARACTER:
+			return String.format("Incorrect character found: %c at index %d", this.errorCharacter, this.errorIndex);
+		case RECORD_TOO_SHORT:
+			return "IndexOutOfBounds: byteCount may be greater than the actual size of record";
+		case CHECKSUM_MISMATCH:
+			return String.format("The calculated checksum %X is not equal to one in the record %X.",
+					(byte) this.calculatedCheckSum, (byte) this.checkSum);
+		case INCORRECT_RECORD_TYPE:
+			return this.recordTypeMessage();
+		default:
+			throw new IllegalArgumentException("Not an error status: " + status);
+		}
+	}
+
+	private String recordTypeMessage() {
+		switch (this.recordType) {
+		case IntelHexRecord.RECORD_EXTENDED_SEGMENT_ADDRESS:
+		case IntelHexRecord.RECORD_EXTENDED_LINEAR_ADDRESS:
+			return "Extended address record should have 2 data bytes";
+		case IntelHexRecord.RECORD_START_SEGMENT_ADDRESS:
+		case IntelHexRecord.RECORD_START_LINEAR_ADDRESS:
+			return "Start address record should have 4 data bytes";
+		default:
+			return "Unknown record type " + this.recordType;
+		}
+	}
+
+	/*
+	 *	Makes the exception the IntelHexRecord constructors throw for the status.
+	 *
+	 *	@param status a status other than OK returned by the last decode
+	 *
+	 *	@return a CheckSumFailException or an IncorrectRecordException
+	 * */
+	Exception exception(int status) {
+		switch (status) {
+		case MISSING_COLON:
+			return new IncorrectRecordException("Record should start with a colon \":\"");
+		case INCORRECT_CHARACTER:
+			return new IncorrectRecordException(this.errorCharacter, this.errorIndex);
+		case RECORD_TOO_SHORT:
+			return new IncorrectRecordException("IndexOutOfBounds: byteCount may be greater than the actual size of record");
+		case CHECKSUM_MISMATCH:
+			return new CheckSumFailException((byte) this.calculatedCheckSum, (byte) this.checkSum);
+		case INCORRECT_RECORD_TYPE:
+			return new IncorrectRecordException(this.recordTypeMessage());
+		default:
+			throw new IllegalArgumentException("Not an error status: " + status);
+		}
+	}
+
+	/*
+	 *	Throws the exception of the status, for the callers declaring the two exceptions.
+	 *
+	 *	@param status a status other than OK returned by the last decode
+	 *
+	 *	@throws CheckSumFailException
+	 *	@throws IncorrectRecordException
+	 * */
+	void throwException(int status) throws CheckSumFailException, IncorrectRecordException {
+		Exception e = this.exception(status);
+		if (e instanceof CheckSumFailException)
+			throw (CheckSumFailException) e;
+		throw (IncorrectRecordException) e;
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************************************
+ * 	File Name: RecordError.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+/*
+ *	Describes an incorrect line of an Intel HEX file, where it is and what is wrong with it.
+ * */
+public class RecordError {
+
+	// The reasons a line is incorrect
+	public static final int MISSING_COLON 			= RecordDecoder.MISSING_COLON;
+	public static final int INCORRECT_CHARACTER 	= RecordDecoder.INCORRECT_CHARACTER;
+	public static final int RECORD_TOO_SHORT 		= RecordDecoder.RECORD_TOO_SHORT;
+	public static final int CHECKSUM_MISMATCH 		= RecordDecoder.CHECKSUM_MISMATCH;
+	public static final int INCORRECT_RECORD_TYPE 	= RecordDecoder.INCORRECT_RECORD_TYPE;
+	public static final int LINE_TOO_LONG 			= 6;
+
+	private final long lineNumber;
+	private final int column;
+	private final int reason;
+	private final String message;
+
+	// The check sums, only for CHECKSUM_MISMATCH
+	private final int expectedCheckSum;
+	private final int actualCheckSum;
+
+	/*
+	 *	@param lineNumber the number of the line starting from 1
+	 *	@param column the column of the error starting from 1
+	 *	@param reason one of the reason constants
+	 *	@param message a description of what went wrong
+	 *	@param expectedCheckSum the check sum calculated from the record, or -1
+	 *	@param actualCheckSum the check sum in the record, or -1
+	 * */
+	RecordError(long lineNumber, int column, int reason, String message, int expectedCheckSum, int actualCheckSum) {
+		this.lineNumber = lineNumber;
+		this.column = column;
+		this.reason = reason;
+		this.message = message;
+		this.expectedCheckSum = expectedCheckSum;
+		this.actualCheckSum = actualCheckSum;
+	}
+
+	/*
+	 *	Makes the error of the status returned by the last decode of the decoder.
+	 *
+	 *	@param lineNumber the number of the line decoded
+	 *	@param decoder the decoder of the line
+	 *	@param status the status returned by decode, other than OK
+	 *
+	 *	@return the error
+	 * */
+	static RecordError fromDecoder(long lineNumber, RecordDecoder decoder, int status) {
+		boolean checkSum = status == CHECKSUM_MISMATCH;
+		return new RecordError(lineNumber, decoder.errorIndex + 1, status, decoder.message(status),
+				checkSum ? decoder.calculatedCheckSum : -1, checkSum ? decoder.checkSum : -1);
+	}
+
+	/*
+	 *	Returns the number of the line starting from 1.
+	 *
+	 *	@return lineNumber
+	 * */
+	public long getLineNumber() {
+		return this.lineNumber;
+	}
+
+	/*
+	 *	Returns the column where the line went wrong, starting from 1 at the colon:
+	 *	the incorrect character, the end of a short line, the first check sum character,
+	 *	or the byte count or record type of a record whose type and byte count do not go together.
+	 *
+	 *	@return column
+	 * */
+	public int getColumn() {
+		return this.column;
+	}
+
+	/*
+	 *	Returns why the line is incorrect, one of MISSING_COLON, INCORRECT_CHARACTER,
+	 *	RECORD_TOO_SHORT, CHECKSUM_MISMATCH, INCORRECT_RECORD_TYPE or LINE_TOO_LONG.
+	 *
+	 *	@return reason
+	 * */
+	public int getReason() {
+		return this.reason;
+	}
+
+	/*
+	 *	Returns the check sum calculated from the fields of the record.
+	 *
+	 *	@return the unsigned check sum, or -1 if the reason is not CHECKSUM_MISMATCH
+	 * */
+	public int getExpectedCheckSum() {
+		return this.expectedCheckSum;
+	}
+
+	/*
+	 *	Returns the check sum written in the record.
+	 *
+	 *	@return the unsigned check sum, or -1 if the reason is not CHECKSUM_MISMATCH
+	 * */
+	public int getActualCheckSum() {
+		return this.actualCheckSum;
+	}
+
+	/*
+	 *	Returns a description of what went wrong.
+	 *
+	 *	@return message
+	 * */
+	public String getMessage() {
+		return this.message;
+	}
+
+	/*
+	 *	toString method returns the error as "line:column: message".
+	 *
+	 *	@return a string representation of the error
+	 * */
+	@Override
+	public String toString() {
+		return this.lineNumber + ":" + this.column + ": " + this.message;
+	}
+}
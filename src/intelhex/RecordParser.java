@@ -0,0 +1,264 @@
+/*******************************************************************************************************
+ * 	File Name: RecordParser.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import intelhex.IntelHexRecord.CheckSumFailException;
+import intelhex.IntelHexRecord.IncorrectRecordException;
+
+import java.nio.ByteBuffer;
+
+/*
+ *	Parses single Intel HEX records without throwing. parse returns OK or the reason
+ *	the record is incorrect, the fields of a correct record and the details of an
+ *	incorrect one are then read from the parser. A parser is reused for any number of
+ *	records and parsing allocates nothing, so an incorrect record costs the same as a
+ *	correct one. No stack trace or message is made unless asked for.
+ *
+ *	A parser is not thread safe, the fields are those of the last record parsed.
+ * */
+public final class RecordParser {
+
+	// The status returned by parse, the reasons are the same as RecordError
+	public static final int OK 						= RecordDecoder.OK;
+	public static final int MISSING_COLON 			= RecordError.MISSING_COLON;
+	public static final int INCORRECT_CHARACTER 	= RecordError.INCORRECT_CHARACTER;
+	public static final int RECORD_TOO_SHORT 		= RecordError.RECORD_TOO_SHORT;
+	public static final int CHECKSUM_MISMATCH 		= RecordError.CHECKSUM_MISMATCH;
+	public static final int INCORRECT_RECORD_TYPE 	= RecordError.INCORRECT_RECORD_TYPE;
+
+	private final RecordDecoder decoder = new RecordDecoder();
+
+	// The status of the last parse, -1 before the first
+	private int status = -1;
+
+	/*
+	 *	Parses a single record without the line terminator.
+	 *
+	 *	@param record a string containing a single record
+	 *
+	 *	@return OK or the reason the record is incorrect
+	 * */
+	public int parse(CharSequence record) {
+		return this.status = this.decoder.decode(record, 0, record.length());
+	}
+
+	/*
+	 *	Parses the ASCII bytes of a single record without the line terminator.
+	 *
+	 *	@param record an array containing the record
+	 *	@param offset the index of the colon ':' in the array
+	 *	@param length the number of bytes in the record
+	 *
+	 *	@return OK or the reason the record is incorrect
+	 * */
+	public int parse(byte[] record, int offset, int length) {
+		return this.parse(ByteBuffer.wrap(record), offset, length);
+	}
+
+	/*
+	 *	Parses the ASCII bytes of a single record without the line terminator.
+	 *	The record is read with absolute gets, so the position and limit of the buffer are not changed.
+	 *
+	 *	@param record a buffer containing the record
+	 *	@param offset the index of the colon ':' in the buffer
+	 *	@param length the number of bytes in the record
+	 *
+	 *	@return OK or the reason the record is incorrect
+	 * */
+	public int parse(ByteBuffer record, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > record.limit() - length)
+			throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", limit " + record.limit());
+
+		return this.status = this.decoder.decode(record, offset, offset + length);
+	}
+
+	/*
+	 *	Returns the status of the last parse.
+	 *
+	 *	@return status
+	 * */
+	public int getStatus() {
+		return this.status;
+	}
+
+	/*
+	 *	Makes an IntelHexRecord of the last record parsed, same as the IntelHexRecord constructors.
+	 *
+	 *	@throws CheckSumFailException, IncorrectRecordException if the last record parsed is incorrect
+	 *
+	 *	@return the record
+	 * */
+	public IntelHexRecord toRecord() throws CheckSumFailException, IncorrectRecordException {
+		this.checkParsed();
+		if (this.status != OK)
+			this.decoder.throwException(this.status);
+		return new IntelHexRecord(this.decoder);
+	}
+
+	/////////////////////////////// GETTER METHODS OF A CORRECT RECORD ////////////////////////////////
+	/*
+	 *	Returns the number of data bytes.
+	 *
+	 *	@return byteCount
+	 * */
+	public byte getByteCount() {
+		this.checkOk();
+		return (byte) this.decoder.byteCount;
+	}
+
+	/*
+	 *	Returns the 8 MSBits of 16-bit address.
+	 *
+	 *	@return addrH
+	 * */
+	public byte getAddrH() {
+		this.checkOk();
+		return (byte) this.decoder.addrH;
+	}
+
+	/*
+	 *	Returns the 8 LSBits of 16-bit address.
+	 *
+	 *	@return addrL
+	 * */
+	public byte getAddrL() {
+		this.checkOk();
+		return (byte) this.decoder.addrL;
+	}
+
+	/*
+	 *	Returns the 16-bit address made of addrH and addrL.
+	 *
+	 *	@return address
+	 * */
+	public int getAddress() {
+		this.checkOk();
+		return this.decoder.address();
+	}
+
+	/*
+	 *	Returns the record type.
+	 *
+	 *	@return recordType
+	 * */
+	public byte getRecordType() {
+		this.checkOk();
+		return (byte) this.decoder.recordType;
+	}
+
+	/*
+	 *	Returns the Check Sum.
+	 *
+	 *	@return checkSum
+	 * */
+	public byte getCheckSum() {
+		this.checkOk();
+		return (byte) this.decoder.checkSum;
+	}
+
+	/*
+	 *	Copies the data bytes to the array.
+	 *
+	 *	@param dest the array the data bytes are copied to
+	 *	@param offset the index in dest of the first data byte
+	 *
+	 *	@return the number of data bytes copied
+	 * */
+	public int getData(byte[] dest, int offset) {
+		this.checkOk();
+		System.arraycopy(this.decoder.data, 0, dest, offset, this.decoder.byteCount);
+		return this.decoder.byteCount;
+	}
+
+	/////////////////////////////// GETTER METHODS OF AN INCORRECT RECORD ////////////////////////////////
+	/*
+	 *	Returns the index from the colon where the record went wrong: the colon, the incorrect
+	 *	character, the end of a short record, the check sum, or the byte count or record type
+	 *	which do not go together.
+	 *
+	 *	@return errorIndex
+	 * */
+	public int getErrorIndex() {
+		this.checkError();
+		return this.decoder.errorIndex;
+	}
+
+	/*
+	 *	Returns the check sum calculated from the fields of the record.
+	 *
+	 *	@return the unsigned check sum, or -1 if the status is not CHECKSUM_MISMATCH
+	 * */
+	public int getExpectedCheckSum() {
+		this.checkError();
+		return this.status == CHECKSUM_MISMATCH ? this.decoder.calculatedCheckSum : -1;
+	}
+
+	/*
+	 *	Returns the check sum written in the record.
+	 *
+	 *	@return the unsigned check sum, or -1 if the status is not CHECKSUM_MISMATCH
+	 * */
+	public int getActualCheckSum() {
+		this.checkError();
+		return this.status == CHECKSUM_MISMATCH ? this.decoder.checkSum : -1;
+	}
+
+	/*
+	 *	Describes what went wrong, with the same text as the message of the exception.
+	 *	The message is made on every call.
+	 *
+	 *	@return the description of the error
+	 * */
+	public String getErrorMessage() {
+		this.checkError();
+		return this.decoder.message(this.status);
+	}
+
+	/*
+	 *	Makes the RecordError of the last record parsed.
+	 *
+	 *	@param lineNumber the line number of the record
+	 *
+	 *	@return the error
+	 * */
+	public RecordError toError(long lineNumber) {
+		this.checkError();
+		return RecordError.fromDecoder(lineNumber, this.decoder, this.status);
+	}
+
+	private void checkParsed() {
+		if (this.status < 0)
+			throw new IllegalStateException("No record has been parsed");
+	}
+
+	private void checkOk() {
+		if (this.status != OK)
+			throw new IllegalStateException("The last record parsed is not correct");
+	}
+
+	private void checkError() {
+		if (this.status <= OK)
+			throw new IllegalStateException("The last record parsed has no error");
+	}
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************************************
+ * 	File Name: RecordTable.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ *	Stores many records as columns of primitive arrays instead of one IntelHexRecord each.
+ *	The addresses, record types and check sums are kept in their own arrays and the data
+ *	bytes of all the records one after another in a single array, record i having the bytes
+ *	data[offsets[i], offsets[i + 1]). The byte count of a record is the length of its data.
+ *
+ *	The records are read through a View, a reusable object which is moved from record to
+ *	record, so walking the table allocates nothing.
+ * */
+public class RecordTable implements Iterable<RecordTable.View> {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int size;
+
+	// The columns, one element per record
+	private short[] addresses = new short[INITIAL_CAPACITY];
+	private int[] absoluteAddresses = new int[INITIAL_CAPACITY];
+	private byte[] recordTypes = new byte[INITIAL_CAPACITY];
+	private byte[] checkSums = new byte[INITIAL_CAPACITY];
+
+	// The start of the data of each record, offsets[size] is the end of the data of the last
+	private int[] offsets = new int[INITIAL_CAPACITY + 1];
+	private byte[] data = new byte[INITIAL_CAPACITY * 16];
+
+	/*
+	 *	Adds a copy of the record at the end of the table.
+	 *
+	 *	@param record the record to add
+	 * */
+	public void add(IntelHexRecord record) {
+		byte[] dataSequence = record.getDataSequence();
+		this.add(record.getAddress(), record.getAbsoluteAddress(), record.getRecordType(), record.getCheckSum(),
+				dataSequence, dataSequence.length);
+	}
+
+	/*
+	 *	Adds the record last decoded without error by the decoder and resolves its address
+	 *	with RecordDecoder.nextBase.
+	 *
+	 *	@param decoder the decoder holding the record
+	 *	@param base the base address in effect before the record
+	 *
+	 *	@return the base address in effect after the record
+	 * */
+	long add(RecordDecoder decoder, long base) {
+		this.add(decoder.address(), base + decoder.address(), (byte) decoder.recordType, (byte) decoder.checkSum,
+				decoder.data, decoder.byteCount);
+		return decoder.nextBase(base);
+	}
+
+	private void add(int address, long absoluteAddress, byte recordType, byte checkSum, byte[] bytes, int length) {
+		int index = this.size;
+		if (index == this.recordTypes.length)
+			this.setCapacity(Math.max(index * 2, INITIAL_CAPACITY)); // a trimmed table may have no room at all
+
+		int offset = this.offsets[index];
+		if (this.data.length - offset < length) {
+			if (offset > Integer.MAX_VALUE - 8 - length)
+				throw new IllegalStateException("The data of a table cannot be larger than 2 GB");
+			this.data = Arrays.copyOf(this.data, (int) Math.min(Integer.MAX_VALUE - 8,
+					Math.max(offset + length, this.data.length * 2L)));
+		}
+		System.arraycopy(bytes, 0, this.data, offset, length);
+
+		this.addresses[index] = (short) address;
+		this.absoluteAddresses[index] = (int) absoluteAddress;
+		this.recordTypes[index] = recordType;
+		this.checkSums[index] = checkSum;
+		this.offsets[index + 1] = offset + length;
+		this.size++;
+	}
+
+	private void setCapacity(int capacity) {
+		this.addresses = Arrays.copyOf(this.addresses, capacity);
+		this.absoluteAddresses = Arrays.copyOf(this.absoluteAddresses, capacity);
+		this.recordTypes = Arrays.copyOf(this.recordTypes, capacity);
+		this.checkSums = Arrays.copyOf(this.checkSums, capacity);
+		this.offsets = Arrays.copyOf(this.offsets, capacity + 1);
+	}
+
+	/*
+	 *	Shrinks the arrays to the records in the table, to free the room left for more records.
+	 * */
+	public void trimToSize() {
+		this.setCapacity(this.size);
+		this.data = Arrays.copyOf(this.data, this.offsets[this.size]);
+	}
+
+	/*
+	 *	Returns the number of records.
+	 *
+	 *	@return size
+	 * */
+	public int size() {
+		return this.size;
+	}
+
+	/*
+	 *	Returns the number of data bytes of all the records.
+	 *
+	 *	@return the length of the data
+	 * */
+	public int getDataLength() {
+		return this.offsets[this.size];
+	}
+
+	/*
+	 *	Returns a new view of the record at the index.
+	 *
+	 *	@param index the index of the record
+	 *
+	 *	@return the view
+	 * */
+	public View getView(int index) {
+		View view = new View();
+		view.moveTo(index);
+		return view;
+	}
+
+	/*
+	 *	Returns an iterator over the records. The iterator returns the same View every time,
+	 *	moved to the next record, so a view has to be copied if it is kept.
+	 *
+	 *	@return an iterator over the records
+	 * */
+	@Override
+	public Iterator<View> iterator() {
+		return new Iterator<View>() {
+			private final View view = new View();
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return this.next < RecordTable.this.size;
+			}
+
+			@Override
+			public View next() {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				this.view.moveTo(this.next++);
+				return this.view;
+			}
+		};
+	}
+
+	/*
+	 *	A record of the table, with the getters of IntelHexRecord.
+	 *	Moving the view to another record changes what the getters return.
+	 * */
+	public class View implements RecordView {
+		private int index;
+
+		View() {
+		}
+
+		/*
+		 *	Moves the view to the record at the index.
+		 *
+		 *	@param index the index of the record
+		 * */
+		public void moveTo(int index) {
+			if (index < 0 || index >= RecordTable.this.size)
+				throw new IndexOutOfBoundsException("index " + index + ", size " + RecordTable.this.size);
+			this.index = index;
+		}
+
+		/*
+		 *	Returns the index of the record in the table.
+		 *
+		 *	@return index
+		 * */
+		public int getIndex() {
+			return this.index;
+		}
+
+		/*
+		 *	Returns the number of data bytes.
+		 *
+		 *	@return byteCount
+		 * */
+		@Override
+		public byte getByteCount() {
+			return (byte) (RecordTable.this.offsets[this.index + 1] - RecordTable.this.offsets[this.index]);
+		}
+
+		/*
+		 *	Returns the 8 MSBits of 16-bit address.
+		 *
+		 *	@return addrH
+		 * */
+		@Override
+		public byte getAddrH() {
+			return (byte) (RecordTable.this.addresses[this.index] >> 8);
+		}
+
+		/*
+		 *	Returns the 8 LSBits of 16-bit address.
+		 *
+		 *	@return addrL
+		 * */
+		@Override
+		public byte getAddrL() {
+			return (byte) RecordTable.this.addresses[this.index];
+		}
+
+		/*
+		 *	Returns the 16-bit address made of addrH and addrL.
+		 *
+		 *	@return address
+		 * */
+		@Override
+		public int getAddress() {
+			return RecordTable.this.addresses[this.index] & 0xffff;
+		}
+
+		/*
+		 *	Returns the 32-bit address of the record, including the base set by the extended
+		 *	address record before it.
+		 *
+		 *	@return absoluteAddress
+		 * */
+		@Override
+		public long getAbsoluteAddress() {
+			return RecordTable.this.absoluteAddresses[this.index] & 0xFFFFFFFFL;
+		}
+
+		/*
+		 *	Returns the record type.
+		 *
+		 *	@return recordType
+		 * */
+		@Override
+		public byte getRecordType() {
+			return RecordTable.this.recordTypes[this.index];
+		}
+
+		/*
+		 *	Returns the Check Sum.
+		 *
+		 *	@return checkSum
+		 * */
+		@Override
+		public byte getCheckSum() {
+			return RecordTable.this.checkSums[this.index];
+		}
+
+		/*
+		 *	Returns a copy of the data bytes in an array.
+		 *
+		 *	@return dataSequence
+		 * */
+		@Override
+		public byte[] getDataSequence() {
+			return Arrays.copyOfRange(RecordTable.this.data, RecordTable.this.offsets[this.index],
+					RecordTable.this.offsets[this.index + 1]);
+		}
+
+		/*
+		 *	Copies the data bytes to the array, without allocating.
+		 *
+		 *	@param dest the array the data bytes are copied to
+		 *	@param offset the index in dest of the first data byte
+		 *
+		 *	@return the number of data bytes copied
+		 * */
+		@Override
+		public int getData(byte[] dest, int offset) {
+			int start = RecordTable.this.offsets[this.index];
+			int length = RecordTable.this.offsets[this.index + 1] - start;
+			System.arraycopy(RecordTable.this.data, start, dest, offset, length);
+			return length;
+		}
+
+		/*
+		 *	Returns the record formatted string, built from the fields in upper case hex.
+		 *
+		 *	@return record
+		 * */
+		@Override
+		public String getRecord() {
+			int start = RecordTable.this.offsets[this.index];
+			int length = RecordTable.this.offsets[this.index + 1] - start;
+			byte[] out = new byte[11 + 2 * length];
+
+			IntelHexRecord.encode(out, 0, this.getRecordType() & 0xff, this.getAddress(),
+					RecordTable.this.data, start, length);
+			return new String(out, StandardCharsets.US_ASCII);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Record %d: %s", this.index, this.getRecord());
+		}
+	}
+}
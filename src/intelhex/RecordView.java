@@ -0,0 +1,105 @@
+/*******************************************************************************************************
+ * 	File Name: RecordView.java
+ * 	@author M. A. Anjum
+ *
+ * 	The MIT License (MIT)
+ *	Copyright (c) 2015 M. A. Anjum
+ *	Email : ma.anjum95@gmail.com
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy of this software
+ *	and associated documentation files (the "Software"), to deal in the Software without restriction,
+ *	including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ *	sublicense, and/or sell copies of the Software, and to permit persons to whom the Software
+ *	is furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in all copies
+ *	or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED,
+ *	INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE
+ *	AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ *	DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF
+ *	OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ********************************************************************************************************/
+package intelhex;
+
+/*
+ *	The getters of a record, shared by IntelHexRecord and the reusable views of RecordTable
+ *	and RecordCursor, so code reading records does not depend on how they are stored.
+ * */
+public interface RecordView {
+
+	/*
+	 *	Returns the number of data bytes.
+	 *
+	 *	@return byteCount
+	 * */
+	byte getByteCount();
+
+	/*
+	 *	Returns the 8 MSBits of 16-bit address.
+	 *
+	 *	@return addrH
+	 * */
+	byte getAddrH();
+
+	/*
+	 *	Returns the 8 LSBits of 16-bit address.
+	 *
+	 *	@return addrL
+	 * */
+	byte getAddrL();
+
+	/*
+	 *	Returns the 16-bit address made of addrH and addrL.
+	 *
+	 *	@return address
+	 * */
+	int getAddress();
+
+	/*
+	 *	Returns the 32-bit address of the record, including the base set by the extended
+	 *	address record before it. The address wraps around at the end of the 32-bit address space.
+	 *
+	 *	@return absoluteAddress
+	 * */
+	long getAbsoluteAddress();
+
+	/*
+	 *	Returns the record type.
+	 *
+	 *	@return recordType
+	 * */
+	byte getRecordType();
+
+	/*
+	 *	Returns the Check Sum.
+	 *
+	 *	@return checkSum
+	 * */
+	byte getCheckSum();
+
+	/*
+	 *	Returns the data bytes in an array, which is a copy for the reusable views.
+	 *
+	 *	@return dataSequence
+	 * */
+	byte[] getDataSequence();
+
+	/*
+	 *	Copies the data bytes to the array.
+	 *
+	 *	@param dest the array the data bytes are copied to
+	 *	@param offset the index in dest of the first data byte
+	 *
+	 *	@return the number of data bytes copied
+	 * */
+	int getData(byte[] dest, int offset);
+
+	/*
+	 *	Returns the record formatted string.
+	 *
+	 *	@return record
+	 * */
+	String getRecord();
+}